@@ -0,0 +1,112 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi;
+
+import java.lang.reflect.Method;
+
+import javax.servlet.ServletRequest;
+
+import br.octahedron.util.Log;
+
+/**
+ * Access to the Servlet 3 asynchronous support. Cotopaxi is built against the Servlet 2.5 API, so
+ * the asynchronous methods are looked up when this class is loaded, and the support is only
+ * available if the container provides them.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+final class AsyncSupport {
+
+	private static final Log log = new Log(AsyncSupport.class);
+	private static final Method IS_ASYNC_SUPPORTED;
+	private static final Method START_ASYNC;
+	private static final Method SET_TIMEOUT;
+	private static final Method COMPLETE;
+
+	static {
+		Method isAsyncSupported = null;
+		Method startAsync = null;
+		Method setTimeout = null;
+		Method complete = null;
+		try {
+			Class<?> asyncContext = Class.forName("javax.servlet.AsyncContext", false, ServletRequest.class.getClassLoader());
+			isAsyncSupported = ServletRequest.class.getMethod("isAsyncSupported");
+			startAsync = ServletRequest.class.getMethod("startAsync");
+			setTimeout = asyncContext.getMethod("setTimeout", long.class);
+			complete = asyncContext.getMethod("complete");
+		} catch (Exception ex) {
+			log.debug("Servlet asynchronous support isn't available: %s", ex.toString());
+			// marks the support as unavailable, even if some methods were found
+			isAsyncSupported = null;
+		}
+		IS_ASYNC_SUPPORTED = isAsyncSupported;
+		START_ASYNC = startAsync;
+		SET_TIMEOUT = setTimeout;
+		COMPLETE = complete;
+	}
+
+	private AsyncSupport() {
+		// static methods only
+	}
+
+	/**
+	 * Checks if the container provides the Servlet 3 asynchronous API
+	 */
+	protected static boolean isAvailable() {
+		return IS_ASYNC_SUPPORTED != null;
+	}
+
+	/**
+	 * Checks if the given request can be put in asynchronous mode
+	 */
+	protected static boolean isSupported(ServletRequest request) {
+		if (isAvailable()) {
+			try {
+				return (Boolean) IS_ASYNC_SUPPORTED.invoke(request);
+			} catch (Exception ex) {
+				log.warning("Unable to check asynchronous support: %s", ex.toString());
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Puts the given request in asynchronous mode.
+	 * 
+	 * @param timeout
+	 *            the asynchronous timeout, in milliseconds. If 0, the container's default is used.
+	 * @return the request's AsyncContext
+	 */
+	protected static Object start(ServletRequest request, long timeout) throws Exception {
+		Object asyncContext = START_ASYNC.invoke(request);
+		if (timeout > 0) {
+			SET_TIMEOUT.invoke(asyncContext, timeout);
+		}
+		return asyncContext;
+	}
+
+	/**
+	 * Completes the given AsyncContext, committing the response
+	 */
+	protected static void complete(Object asyncContext) {
+		try {
+			COMPLETE.invoke(asyncContext);
+		} catch (Exception ex) {
+			log.warning("Unable to complete asynchronous request: %s", ex.toString());
+		}
+	}
+}
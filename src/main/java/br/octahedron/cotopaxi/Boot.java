@@ -0,0 +1,58 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares how a {@link Bootloader} should be executed when the application boots.
+ * 
+ * Bootloaders with this annotation are executed concurrently, unless they depend on each other. A
+ * bootloader is only executed after all the bootloaders listed at {@link #after()} were executed.
+ * Bootloaders without this annotation are required, and executed in the order they're declared at
+ * the configuration file, each one after the previous bootloader without this annotation.
+ * 
+ * Eg.:
+ * 
+ * <pre>
+ * &#064;Boot(after = DatastoreBootloader.class)
+ * public class CacheWarmUpBootloader implements Bootloader {
+ * 	...
+ * }
+ * </pre>
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Boot {
+
+	/**
+	 * The bootloaders that should be executed before this one. Bootloaders not listed at the
+	 * configuration file are ignored.
+	 */
+	Class<? extends Bootloader>[] after() default {};
+
+	/**
+	 * If <code>true</code>, a failure on this bootloader aborts the application boot. Otherwise,
+	 * the failure is logged and the boot goes on. Default: true
+	 */
+	boolean required() default true;
+}
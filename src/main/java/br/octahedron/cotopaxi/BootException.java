@@ -0,0 +1,36 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi;
+
+/**
+ * Indicates that the application boot failed, either because a required {@link Bootloader} failed
+ * or because bootloaders' dependencies can't be satisfied.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class BootException extends RuntimeException {
+
+	private static final long serialVersionUID = -3411823395520784610L;
+
+	public BootException(String message) {
+		super(message);
+	}
+
+	public BootException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
@@ -16,17 +16,38 @@
  */
 package br.octahedron.cotopaxi;
 
+import static br.octahedron.cotopaxi.CotopaxiProperty.BOOT_THREADS;
+import static br.octahedron.cotopaxi.CotopaxiProperty.property;
 import static br.octahedron.cotopaxi.inject.Injector.createInstance;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import br.octahedron.cotopaxi.CotopaxiProperty.Snapshot;
+import br.octahedron.cotopaxi.inject.DependencyManager;
+import br.octahedron.cotopaxi.inject.DependencyManager.Registry;
 import br.octahedron.util.Log;
 import br.octahedron.util.ReflectionUtil;
 
 /**
  * A simple interface to be executed when application boots.
  * 
+ * Bootloaders can use the {@link Boot} annotation to declare the bootloaders they depend on.
+ * 
  * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
  */
 public interface Bootloader {
@@ -38,21 +59,241 @@ public interface Bootloader {
 
 	/**
 	 * This entity is responsible by boot a bunch of {@link Bootloader}
+	 * 
+	 * Bootloaders are executed respecting the dependencies declared by the {@link Boot}
+	 * annotation. Bootloaders without it keep the configuration file order among themselves.
+	 * Independent bootloaders are executed concurrently, up to
+	 * {@link CotopaxiProperty#BOOT_THREADS} at a time. Circular dependencies are detected before
+	 * any bootloader is executed. If a required bootloader fails, the
+	 * bootloaders not executed yet are discarded and the boot fails with a {@link BootException}.
+	 * 
+	 * Bootloaders are executed with the properties {@link CotopaxiProperty.Snapshot} and the
+	 * dependencies {@link Registry} staged for the booting thread, if any.
 	 */
 	static class Booter implements Bootloader {
 		private static final Log log = new Log(Booter.class);
-		private Collection<Bootloader> bootloaders = new LinkedList<Bootloader>();
+		private static final Executor DIRECT = new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				command.run();
+			}
+		};
+		private Map<Class<?>, Bootloader> bootloaders = new LinkedHashMap<Class<?>, Bootloader>();
 
 		public void addBootloader(String bootloaderClass) throws InstantiationException, IllegalAccessException, ClassNotFoundException {
 			Bootloader bootloader = (Bootloader) createInstance(ReflectionUtil.getClass(bootloaderClass));
 			log.debug("Bootloader %s loaded - but no executed yet!", bootloaderClass);
-			this.bootloaders.add(bootloader);
+			this.bootloaders.put(bootloader.getClass(), bootloader);
 		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see br.octahedron.cotopaxi.Bootloader#boot()
+		 */
 		@Override
 		public void boot() {
-			for (Bootloader bootloader : this.bootloaders) {
-				log.info("Executing bootloader %s", bootloader.getClass());
-				bootloader.boot();
+			if (this.bootloaders.isEmpty()) {
+				return;
+			}
+			int threads = Math.max(1, Math.min(this.bootloaders.size(), Integer.parseInt(property(BOOT_THREADS))));
+			ExecutorService pool = (threads > 1) ? Executors.newFixedThreadPool(threads, new BootThreadFactory()) : null;
+			try {
+				this.boot((pool != null) ? pool : DIRECT, threads);
+			} finally {
+				if (pool != null) {
+					pool.shutdownNow();
+				}
+			}
+		}
+
+		private void boot(Executor executor, int threads) {
+			long start = System.nanoTime();
+			Collection<BootTask> tasks = this.createTasks();
+			Snapshot snapshot = CotopaxiProperty.staged();
+			Registry registry = DependencyManager.staged();
+			for (BootTask task : tasks) {
+				task.snapshot = snapshot;
+				task.registry = registry;
+			}
+			LinkedList<BootTask> ready = new LinkedList<BootTask>();
+			for (BootTask task : tasks) {
+				if (task.pending == 0) {
+					ready.add(task);
+				}
+			}
+			CompletionService<BootTask> completion = new ExecutorCompletionService<BootTask>(executor);
+			int running = 0;
+			int done = 0;
+			while (done < tasks.size()) {
+				while (running < threads && !ready.isEmpty()) {
+					completion.submit(ready.removeFirst());
+					running++;
+				}
+				BootTask task = this.take(completion);
+				running--;
+				done++;
+				if (task.failure != null) {
+					if (task.required) {
+						throw new BootException(String.format("Bootloader %s failed", task.name()), task.failure);
+					}
+					log.warning(task.failure, "Bootloader %s failed. It isn't required, so booting goes on", task.name());
+				}
+				for (BootTask dependent : task.dependents) {
+					if (--dependent.pending == 0) {
+						ready.add(dependent);
+					}
+				}
+			}
+			log.info("%d bootloaders executed in %d ms", tasks.size(), (System.nanoTime() - start) / 1000000);
+		}
+
+		private Collection<BootTask> createTasks() {
+			Map<Class<?>, BootTask> tasks = new LinkedHashMap<Class<?>, BootTask>();
+			for (Bootloader bootloader : this.bootloaders.values()) {
+				tasks.put(bootloader.getClass(), new BootTask(bootloader));
+			}
+			BootTask previous = null;
+			for (BootTask task : tasks.values()) {
+				Boot boot = task.bootloader.getClass().getAnnotation(Boot.class);
+				if (boot == null) {
+					// bootloaders unaware of dependencies keep the configuration order
+					if (previous != null) {
+						task.pending++;
+						previous.dependents.add(task);
+					}
+					previous = task;
+				} else {
+					for (Class<? extends Bootloader> dependency : boot.after()) {
+						BootTask before = tasks.get(dependency);
+						if (before != null) {
+							task.pending++;
+							before.dependents.add(task);
+						} else {
+							log.warning("Bootloader %s depends on %s, but it isn't configured", task.name(), dependency.getName());
+						}
+					}
+				}
+			}
+			this.checkCycles(tasks.values());
+			return tasks.values();
+		}
+
+		/**
+		 * Checks if all the tasks can be executed, walking the dependencies graph as the tasks
+		 * would be executed, before executing any of them.
+		 * 
+		 * @throws BootException
+		 *             if there are circular dependencies
+		 */
+		private void checkCycles(Collection<BootTask> tasks) {
+			Map<BootTask, Integer> pending = new HashMap<BootTask, Integer>();
+			LinkedList<BootTask> ready = new LinkedList<BootTask>();
+			for (BootTask task : tasks) {
+				pending.put(task, task.pending);
+				if (task.pending == 0) {
+					ready.add(task);
+				}
+			}
+			while (!ready.isEmpty()) {
+				BootTask task = ready.removeFirst();
+				pending.remove(task);
+				for (BootTask dependent : task.dependents) {
+					int count = pending.get(dependent) - 1;
+					pending.put(dependent, count);
+					if (count == 0) {
+						ready.add(dependent);
+					}
+				}
+			}
+			if (!pending.isEmpty()) {
+				List<String> names = new ArrayList<String>();
+				for (BootTask task : tasks) {
+					if (pending.containsKey(task)) {
+						names.add(task.name());
+					}
+				}
+				throw new BootException("Circular dependency between bootloaders: " + names);
+			}
+		}
+
+		private BootTask take(CompletionService<BootTask> completion) {
+			try {
+				return completion.take().get();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new BootException("Boot interrupted", ex);
+			} catch (ExecutionException ex) {
+				// BootTask catches bootloaders' failures
+				throw new BootException("Unexpected boot failure", ex.getCause());
+			}
+		}
+
+		/**
+		 * Executes a bootloader. Dependencies are tracked by the booting thread only.
+		 */
+		private static class BootTask implements Callable<BootTask> {
+			private final Bootloader bootloader;
+			private final boolean required;
+			private final List<BootTask> dependents = new LinkedList<BootTask>();
+			private int pending = 0;
+			private Throwable failure;
+			private Snapshot snapshot;
+			private Registry registry;
+
+			private BootTask(Bootloader bootloader) {
+				Boot boot = bootloader.getClass().getAnnotation(Boot.class);
+				this.bootloader = bootloader;
+				this.required = (boot == null || boot.required());
+			}
+
+			private String name() {
+				return this.bootloader.getClass().getName();
+			}
+
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see java.util.concurrent.Callable#call()
+			 */
+			@Override
+			public BootTask call() {
+				log.info("Executing bootloader %s", this.name());
+				long start = System.nanoTime();
+				Snapshot previousSnapshot = CotopaxiProperty.staged();
+				Registry previousRegistry = DependencyManager.staged();
+				CotopaxiProperty.stage(this.snapshot);
+				DependencyManager.stage(this.registry);
+				try {
+					this.bootloader.boot();
+					log.info("Bootloader %s executed in %d ms", this.name(), (System.nanoTime() - start) / 1000000);
+				} catch (Throwable t) {
+					log.error("Bootloader %s failed after %d ms: %s", this.name(), (System.nanoTime() - start) / 1000000, t.toString());
+					this.failure = t;
+				} finally {
+					CotopaxiProperty.stage(previousSnapshot);
+					DependencyManager.stage(previousRegistry);
+				}
+				return this;
+			}
+		}
+
+		/**
+		 * Creates the booting threads
+		 */
+		private static class BootThreadFactory implements ThreadFactory {
+			private final AtomicInteger count = new AtomicInteger();
+
+			/*
+			 * (non-Javadoc)
+			 * 
+			 * @see java.util.concurrent.ThreadFactory#newThread(java.lang.Runnable)
+			 */
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "cotopaxi-boot-" + this.count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
 			}
 		}
 	}
@@ -19,10 +19,18 @@ package br.octahedron.cotopaxi;
 import java.nio.charset.Charset;
 import java.text.DateFormat;
 import java.text.NumberFormat;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import br.octahedron.cotopaxi.i18n.LocaleManager;
 import br.octahedron.util.DateUtil;
+import br.octahedron.util.Log;
 
 /**
  * The CotopaxiFramework's properties and default values.
@@ -32,6 +40,8 @@ import br.octahedron.util.DateUtil;
  * 
  * E.g.: System.setProperty("TEMPLATE_FOLDER","tpls/");
  * 
+ * The properties are also resolved to a {@link Snapshot}, when the configuration is loaded, to be
+ * read while serving requests.
  * 
  * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
  * 
@@ -50,6 +60,27 @@ public enum CotopaxiProperty {
 	 * Templates' folder. Default: templates/
 	 */
 	TEMPLATE_FOLDER("templates/"),
+	/**
+	 * The interval, in seconds, to check if cached templates were modified. It's used at
+	 * DEVELOPMENT and UNKNOWN running modes. At PRODUCTION running mode templates aren't checked,
+	 * and at TEST running mode they aren't cached. Default: 2
+	 */
+	TEMPLATE_CHECK_INTERVAL("2"),
+	/**
+	 * If <code>true</code>, the templates' static text is encoded once, when templates are loaded,
+	 * and written as is when they're rendered. Only the dynamic content is encoded on each render.
+	 * It's useful for large templates with mostly static content. Default: false
+	 */
+	TEMPLATE_PREENCODING("false"),
+	/**
+	 * The running modes, separated by commas, at which templates' static HTML is minified when
+	 * templates are loaded: whitespace is collapsed and comments are removed, except at
+	 * <code>pre</code>, <code>textarea</code> and <code>script</code> elements. E.g.: PRODUCTION,
+	 * DEVELOPMENT
+	 * 
+	 * Default: none
+	 */
+	TEMPLATE_MINIFY(""),
 	/**
 	 * Server Error (500) template. Default: error.vm
 	 */
@@ -107,6 +138,87 @@ public enum CotopaxiProperty {
 	 * The property used to binds internationalization {@link NumberFormat}. Default: numberFormat
 	 */
 	I18N_NUMBER_FORMAT_PROPERTY("numberFormat"),
+	/**
+	 * The RouteCache to be used to cache resolved dynamic routes. Default:
+	 * br.octahedron.cotopaxi.route.BoundedRouteCache
+	 * 
+	 * @see br.octahedron.cotopaxi.route.RouteCache
+	 */
+	ROUTE_CACHE("br.octahedron.cotopaxi.route.BoundedRouteCache"),
+	/**
+	 * The maximum number of resolved dynamic routes kept at the route cache. Default: 1000
+	 */
+	ROUTE_CACHE_SIZE("1000"),
+	/**
+	 * The maximum number of not found URLs kept at the not found cache. If 0, not found URLs aren't
+	 * cached. Default: 1000
+	 */
+	NOT_FOUND_CACHE_SIZE("1000"),
+	/**
+	 * A static page to be served, as is, for Not Found Error (404), instead of rendering the
+	 * NOT_FOUND_TEMPLATE. Default: none
+	 */
+	NOT_FOUND_PAGE(null),
+	/**
+	 * If <code>true</code>, suspended controllers release the container thread using the Servlet 3
+	 * asynchronous support. If the container doesn't support it, the request thread waits for the
+	 * controller to be resumed. Default: false
+	 */
+	ASYNC_MODE("false"),
+	/**
+	 * The time, in milliseconds, that an asynchronous request waits for a suspended controller to
+	 * be resumed. If 0, the container's default is used. Default: 30000
+	 */
+	ASYNC_TIMEOUT("30000"),
+	/**
+	 * If <code>true</code>, each request is executed on its own virtual thread, so blocking calls
+	 * made by controllers don't hold container threads. It requires a JVM with virtual threads and
+	 * a container with Servlet 3 asynchronous support; otherwise requests are executed by the
+	 * container threads. Default: false
+	 */
+	VIRTUAL_THREADS("false"),
+	/**
+	 * If <code>true</code>, the controller contexts and their responses are recycled after each
+	 * request, and reused by the next request executed by the same thread. It's always disabled
+	 * at TEST running mode, since tests inspect responses after requests. Default: false
+	 */
+	RECYCLE_CONTEXTS("false"),
+	/**
+	 * The maximum number of bootloaders executed concurrently when the application boots, and of
+	 * templates compiled concurrently by the {@link br.octahedron.cotopaxi.view.render.TemplatePrecompiler}.
+	 * If 1, they're executed one by one by the thread that initializes Cotopaxi, what is required
+	 * by platforms that don't allow applications to create threads. Default: 4
+	 * 
+	 * @see br.octahedron.cotopaxi.Boot
+	 */
+	BOOT_THREADS("4"),
+	/**
+	 * The size, in bytes, of the buffer used to render responses. Responses that fit in the buffer
+	 * are sent at once, with their Content-Length; larger ones are streamed in chunks of this
+	 * size. Default: 65536
+	 */
+	RESPONSE_BUFFER_SIZE("65536"),
+	/**
+	 * The running modes, separated by commas, at which JSON responses are pretty printed, with
+	 * line breaks and indentation. Default: UNKNOWN, TEST, DEVELOPMENT
+	 */
+	JSON_PRETTY_PRINT("UNKNOWN, TEST, DEVELOPMENT"),
+	/**
+	 * The file where the parsed configuration file is cached, to be loaded by the next boots while
+	 * the configuration file isn't changed. It should be defined at JVM initialization, since it's
+	 * read when the {@link CotopaxiServlet} is created, before the configuration file is loaded.
+	 * Defining it at the configuration file has no effect. Relative paths are resolved against the
+	 * application private temporary folder, given by the servlet context
+	 * <code>javax.servlet.context.tempdir</code> attribute.
+	 * 
+	 * The cached file is trusted as the configuration file itself, since it declares the
+	 * application dependencies, interceptors, bootloaders and properties. So it should be kept at
+	 * a folder only the application can write, never at a shared one, such as the JVM temporary
+	 * folder. Files not owned by the user running the application are ignored.
+	 * 
+	 * Default: none, the configuration isn't cached
+	 */
+	CONFIGURATION_CACHE(null),
 	/**
 	 * The system {@link TimeZone} to be used by {@link DateUtil} methods. Default: none/JVM
 	 * TimeZone
@@ -115,6 +227,10 @@ public enum CotopaxiProperty {
 	 */
 	TIMEZONE(null);
 
+	private static volatile Snapshot snapshot;
+	private static final ThreadLocal<Snapshot> stagedSnapshot = new ThreadLocal<Snapshot>();
+	private static final AtomicInteger stagingThreads = new AtomicInteger();
+
 	private String defaultValue;
 
 	private CotopaxiProperty(String defaultValue) {
@@ -192,9 +308,15 @@ public enum CotopaxiProperty {
 	 * the configuration file. It the property <b>file.encoding</b> isn't defined, it recovers the
 	 * JVM's default charset using the {@link Charset#defaultCharset()} method.
 	 * 
+	 * The charset is resolved with the current {@link Snapshot}.
+	 * 
 	 * @return The application charset to be used.
 	 */
 	public static Charset charset() {
+		return snapshot().charset();
+	}
+
+	private static Charset resolveCharset() {
 		String charset = System.getProperty("file.encoding");
 		if (charset != null) {
 			return Charset.forName(charset);
@@ -203,6 +325,87 @@ public enum CotopaxiProperty {
 		}
 	}
 
+	/**
+	 * Gets the current {@link Snapshot}. If the properties weren't resolved yet, they're resolved
+	 * now. If there's a {@link Snapshot} staged for the current thread, it's returned instead.
+	 * 
+	 * @return the current {@link Snapshot}
+	 */
+	public static Snapshot snapshot() {
+		if (stagingThreads.get() > 0) {
+			Snapshot staged = stagedSnapshot.get();
+			if (staged != null) {
+				return staged;
+			}
+		}
+		Snapshot current = snapshot;
+		if (current == null) {
+			current = refresh();
+		}
+		return current;
+	}
+
+	/**
+	 * Resolves the current properties' values to a new {@link Snapshot}, and publishes it. It
+	 * should be called when the properties change, such as when the configuration file is loaded.
+	 * 
+	 * @return the new {@link Snapshot}
+	 */
+	public static Snapshot refresh() {
+		Snapshot current = resolve();
+		publish(current);
+		return current;
+	}
+
+	/**
+	 * Resolves the current properties' values to a new {@link Snapshot}, without publishing it.
+	 * 
+	 * @return the new {@link Snapshot}
+	 */
+	public static Snapshot resolve() {
+		return new Snapshot();
+	}
+
+	/**
+	 * Publishes the given {@link Snapshot}, to be read by all threads.
+	 */
+	public static void publish(Snapshot current) {
+		snapshot = current;
+	}
+
+	/**
+	 * Stages the given {@link Snapshot} for the current thread, that reads it instead of the
+	 * published one. It's used to boot a new configuration while the published one keeps serving
+	 * requests.
+	 * 
+	 * @param staged
+	 *            the {@link Snapshot} to be staged, or <code>null</code> to read the published
+	 *            one again
+	 */
+	public static void stage(Snapshot staged) {
+		Snapshot previous = stagedSnapshot.get();
+		if (staged != null) {
+			stagedSnapshot.set(staged);
+			if (previous == null) {
+				stagingThreads.incrementAndGet();
+			}
+		} else {
+			stagedSnapshot.remove();
+			if (previous != null) {
+				stagingThreads.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Gets the {@link Snapshot} staged for the current thread.
+	 * 
+	 * @return the staged {@link Snapshot}, or <code>null</code> if there's none
+	 */
+	public static Snapshot staged() {
+		return stagedSnapshot.get();
+	}
+
 	protected static final String RUNNING_MODE_PROP = "ctpx.running.mode";
 
 	/**
@@ -227,7 +430,7 @@ public enum CotopaxiProperty {
 		if (gae != null) {
 			System.setProperty(RUNNING_MODE_PROP, gae.toUpperCase());
 		} else {
-			System.setProperty(RUNNING_MODE_PROP, "unknown");
+			System.setProperty(RUNNING_MODE_PROP, RunningMode.UNKNOWN.name());
 		}
 	}
 
@@ -238,6 +441,41 @@ public enum CotopaxiProperty {
 		for (CotopaxiProperty prop : CotopaxiProperty.values()) {
 			System.clearProperty(prop.name());
 		}
+		snapshot = null;
+	}
+
+	/**
+	 * Resets all the {@link CotopaxiProperty} to they default values, keeping the published
+	 * {@link Snapshot}.
+	 * 
+	 * @return the values the properties had, to be restored by {@link #restore(Map)}
+	 */
+	public static Map<CotopaxiProperty, String> clear() {
+		Map<CotopaxiProperty, String> values = new EnumMap<CotopaxiProperty, String>(CotopaxiProperty.class);
+		for (CotopaxiProperty prop : CotopaxiProperty.values()) {
+			String value = System.clearProperty(prop.name());
+			if (value != null) {
+				values.put(prop, value);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Restores the {@link CotopaxiProperty} to the given values. Properties without value are
+	 * reset to they default values.
+	 * 
+	 * @see #clear()
+	 */
+	public static void restore(Map<CotopaxiProperty, String> values) {
+		for (CotopaxiProperty prop : CotopaxiProperty.values()) {
+			String value = values.get(prop);
+			if (value != null) {
+				System.setProperty(prop.name(), value);
+			} else {
+				System.clearProperty(prop.name());
+			}
+		}
 	}
 
 	/**
@@ -279,4 +517,109 @@ public enum CotopaxiProperty {
 	public static Charset getCharset() {
 		return charset();
 	}
+
+	/**
+	 * The {@link CotopaxiProperty} values resolved at a given moment. A snapshot is immutable, so
+	 * it can be read by many threads without locking, and its values are already parsed.
+	 * 
+	 * @see CotopaxiProperty#snapshot()
+	 */
+	public static final class Snapshot {
+
+		private static final Log log = new Log(Snapshot.class);
+
+		private final String[] values;
+		private final Charset charset;
+		private final Collection<Locale> supportedLocales;
+		private final int responseBufferSize;
+		private final boolean jsonPrettyPrint;
+
+		private Snapshot() {
+			CotopaxiProperty[] properties = CotopaxiProperty.values();
+			this.values = new String[properties.length];
+			for (CotopaxiProperty property : properties) {
+				this.values[property.ordinal()] = property(property);
+			}
+			this.charset = resolveCharset();
+			this.supportedLocales = Collections.unmodifiableCollection(parseLocales(this.get(I18N_SUPPORTED_LOCALES)));
+			this.responseBufferSize = Integer.parseInt(this.get(RESPONSE_BUFFER_SIZE));
+			this.jsonPrettyPrint = isRunningModeIn(this.get(JSON_PRETTY_PRINT));
+		}
+
+		/**
+		 * Gets the value for the given property
+		 */
+		public String get(CotopaxiProperty property) {
+			return this.values[property.ordinal()];
+		}
+
+		/**
+		 * Gets the application charset
+		 * 
+		 * @see CotopaxiProperty#charset()
+		 */
+		public Charset charset() {
+			return this.charset;
+		}
+
+		/**
+		 * Gets the supported locales, in the order they were declared.
+		 * 
+		 * @see CotopaxiProperty#I18N_SUPPORTED_LOCALES
+		 */
+		public Collection<Locale> supportedLocales() {
+			return this.supportedLocales;
+		}
+
+		/**
+		 * Gets the responses' buffer size
+		 * 
+		 * @see CotopaxiProperty#RESPONSE_BUFFER_SIZE
+		 */
+		public int responseBufferSize() {
+			return this.responseBufferSize;
+		}
+
+		/**
+		 * Checks if JSON responses should be pretty printed at the current running mode
+		 * 
+		 * @see CotopaxiProperty#JSON_PRETTY_PRINT
+		 */
+		public boolean jsonPrettyPrint() {
+			return this.jsonPrettyPrint;
+		}
+
+		private static boolean isRunningModeIn(String modes) {
+			String current = runningMode().name();
+			for (String mode : modes.split(",")) {
+				if (mode.trim().equalsIgnoreCase(current)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private static Collection<Locale> parseLocales(String value) {
+			Collection<Locale> supportedLocales = new LinkedHashSet<Locale>();
+			for (String l : value.split(",")) {
+				Locale lc = null;
+				l = l.trim();
+				int ll = l.length();
+				if (ll == 2) {
+					lc = new Locale(l);
+				} else if (ll == 5 && l.charAt(2) == '_') {
+					String[] ls = l.split("_");
+					lc = new Locale(ls[0], ls[1]);
+				}
+
+				if (lc != null) {
+					log.debug("Adding locale %s to supported locales list", lc.toString());
+					supportedLocales.add(lc);
+				} else {
+					log.warning("%s isn't a valid locale, please check configuration file.", l);
+				}
+			}
+			return supportedLocales;
+		}
+	}
 }
@@ -16,21 +16,36 @@
  */
 package br.octahedron.cotopaxi;
 
+import static br.octahedron.cotopaxi.CotopaxiProperty.ASYNC_MODE;
+import static br.octahedron.cotopaxi.CotopaxiProperty.ASYNC_TIMEOUT;
+import static br.octahedron.cotopaxi.CotopaxiProperty.CONFIGURATION_CACHE;
 import static br.octahedron.cotopaxi.CotopaxiProperty.ERROR_PROPERTY;
 import static br.octahedron.cotopaxi.CotopaxiProperty.ERROR_TEMPLATE;
+import static br.octahedron.cotopaxi.CotopaxiProperty.NOT_FOUND_CACHE_SIZE;
+import static br.octahedron.cotopaxi.CotopaxiProperty.NOT_FOUND_PAGE;
+import static br.octahedron.cotopaxi.CotopaxiProperty.NOT_FOUND_TEMPLATE;
+import static br.octahedron.cotopaxi.CotopaxiProperty.RECYCLE_CONTEXTS;
+import static br.octahedron.cotopaxi.CotopaxiProperty.ROUTE_CACHE;
 import static br.octahedron.cotopaxi.CotopaxiProperty.RUNNING_MODE_PROP;
 import static br.octahedron.cotopaxi.CotopaxiProperty.TEMPLATE_RENDER;
+import static br.octahedron.cotopaxi.CotopaxiProperty.VIRTUAL_THREADS;
 import static br.octahedron.cotopaxi.CotopaxiProperty.property;
 import static br.octahedron.cotopaxi.CotopaxiProperty.runningMode;
+import static br.octahedron.cotopaxi.CotopaxiProperty.snapshot;
 import static br.octahedron.cotopaxi.config.ConfigurationLoader.CONFIGURATION_FILENAME;
 import static br.octahedron.cotopaxi.inject.DependencyManager.registerDependency;
+import static br.octahedron.cotopaxi.inject.Injector.createInstance;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
+import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -40,19 +55,28 @@ import org.apache.velocity.exception.VelocityException;
 
 import br.octahedron.cotopaxi.Bootloader.Booter;
 import br.octahedron.cotopaxi.CotopaxiProperty.RunningMode;
+import br.octahedron.cotopaxi.CotopaxiProperty.Snapshot;
 import br.octahedron.cotopaxi.config.ConfigurationLoader;
 import br.octahedron.cotopaxi.config.ConfigurationSyntaxException;
+import br.octahedron.cotopaxi.controller.Continuation;
 import br.octahedron.cotopaxi.controller.ControllerDescriptor;
 import br.octahedron.cotopaxi.controller.ControllerExecutor;
 import br.octahedron.cotopaxi.controller.ControllerResponse;
 import br.octahedron.cotopaxi.inject.DependencyManager;
+import br.octahedron.cotopaxi.inject.DependencyManager.Registry;
 import br.octahedron.cotopaxi.interceptor.ControllerInterceptor;
 import br.octahedron.cotopaxi.interceptor.InterceptorManager;
 import br.octahedron.cotopaxi.interceptor.TemplateInterceptor;
+import br.octahedron.cotopaxi.route.BoundedRouteCache;
+import br.octahedron.cotopaxi.route.HttpMethod;
 import br.octahedron.cotopaxi.route.NotFoundExeption;
+import br.octahedron.cotopaxi.route.RouteCache;
 import br.octahedron.cotopaxi.route.Router;
 import br.octahedron.cotopaxi.view.render.TemplateRender;
+import br.octahedron.cotopaxi.view.response.AllowedMethodsResponse;
+import br.octahedron.cotopaxi.view.response.StaticResponse;
 import br.octahedron.cotopaxi.view.response.TemplateResponse;
+import br.octahedron.util.FileUtil;
 import br.octahedron.util.Log;
 /**
  * The Cotopaxi Framework entry point.
@@ -66,11 +90,13 @@ public class CotopaxiServlet extends HttpServlet {
 	
 	protected static void setRunningMode(RunningMode mode) {
 		System.setProperty(RUNNING_MODE_PROP, mode.name());
+		CotopaxiProperty.refresh();
 	}
 	
-	protected InterceptorManager interceptor;
-	private Router router;
-	private ControllerExecutor executor;
+	private volatile Application application;
+	private volatile ExecutorService requestExecutor;
+	// it's a JVM setting, read before any configuration load clears the properties
+	private final String configurationCache = property(CONFIGURATION_CACHE);
 
 	/*
 	 * (non-Javadoc)
@@ -80,9 +106,6 @@ public class CotopaxiServlet extends HttpServlet {
 	@Override
 	public void init() throws ServletException {
 		try {
-			this.router = new Router();
-			this.interceptor = new InterceptorManager();
-			this.executor = new ControllerExecutor(this.interceptor);
 			this.forceReload();
 			log.info("Running Mode: %s", runningMode());
 			log.info("Cotopaxi is ready to serve...");
@@ -118,27 +141,152 @@ public class CotopaxiServlet extends HttpServlet {
 		this.deliver(req, resp);
 	}
 
+	/*
+	 * HEAD requests are routed to GET routes by the Router, and executed as any other request. The
+	 * response body is only counted, to set the Content-Length, and discarded.
+	 */
+	@Override
+	protected void doHead(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+		this.deliver(req, new NoBodyResponse(resp));
+	}
+
+	@Override
+	protected void doOptions(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+		this.deliver(req, resp);
+	}
+
 	// internal methods
 
 	/**
 	 * Loads the configuration from file.
 	 * 
-	 * @param booter
-	 *            The system booter class
+	 * The new configuration is loaded off to the side: its properties {@link Snapshot} and
+	 * dependencies {@link Registry} are staged for the loading and booting threads, and the routes,
+	 * interceptors and executor aren't used until the bootloaders succeed. Then they're all
+	 * published at once. If loading or booting fails, the current configuration keeps serving
+	 * requests.
+	 * 
 	 * @throws FileNotFoundException
 	 *             If configuration file isn't found.
 	 * @throws ConfigurationSyntaxException
 	 *             If a syntax error is found at configuration file.
 	 */
-	protected void loadConfiguration() throws FileNotFoundException, ConfigurationSyntaxException, ClassNotFoundException, InstantiationException,
-			IllegalAccessException {
-		Booter booter = new Bootloader.Booter();
+	protected synchronized void loadConfiguration() throws FileNotFoundException, ConfigurationSyntaxException, ClassNotFoundException,
+			InstantiationException, IllegalAccessException {
 		log.info("Loading cotopaxi configuration...");
-		ConfigurationLoader loader = new ConfigurationLoader(this.router, this.interceptor, booter);
-		loader.loadConfiguration();
-		registerDependency(TemplateRender.class.getName(), property(TEMPLATE_RENDER));
-		log.info("Configuration loaded...");
-		booter.boot();
+		Map<CotopaxiProperty, String> previousProperties = CotopaxiProperty.clear();
+		Registry registry = new Registry();
+		DependencyManager.stage(registry);
+		boolean published = false;
+		try {
+			Booter booter = new Bootloader.Booter();
+			Router router = new Router();
+			InterceptorManager interceptor = new InterceptorManager();
+			ConfigurationLoader loader = new ConfigurationLoader(router, interceptor, booter, ConfigurationLoader.cacheFile(this.configurationCache,
+					this.tempDir()));
+			Snapshot snapshot = loader.stageConfiguration();
+			registerDependency(TemplateRender.class.getName(), snapshot.get(TEMPLATE_RENDER));
+			registerDependency(RouteCache.class.getName(), snapshot.get(ROUTE_CACHE));
+			router.setRouteCache(createInstance(RouteCache.class));
+			int notFoundCacheSize = Integer.parseInt(snapshot.get(NOT_FOUND_CACHE_SIZE));
+			router.setNotFoundCache((notFoundCacheSize > 0) ? new BoundedRouteCache(notFoundCacheSize) : null);
+			ControllerResponse notFoundResponse = this.loadNotFoundResponse(snapshot);
+			long asyncTimeout = Long.parseLong(snapshot.get(ASYNC_TIMEOUT));
+			boolean asyncMode = Boolean.parseBoolean(snapshot.get(ASYNC_MODE));
+			if (asyncMode && !AsyncSupport.isAvailable()) {
+				log.warning("Container doesn't support asynchronous requests. Suspended requests will hold the container thread.");
+			}
+			log.info("Configuration loaded...");
+			booter.boot();
+			// controllers are compiled after boot, since they can depend on bootloaders
+			ControllerExecutor executor = new ControllerExecutor(interceptor);
+			executor.setRecycleContexts(Boolean.parseBoolean(snapshot.get(RECYCLE_CONTEXTS)) && runningMode() != RunningMode.TEST);
+			executor.prepare(router.getRoutes());
+			// everything is ready: publishes the new configuration
+			DependencyManager.publish(registry);
+			CotopaxiProperty.publish(snapshot);
+			this.application = new Application(router, interceptor, executor, notFoundResponse, asyncMode, asyncTimeout);
+			this.loadRequestExecutor(Boolean.parseBoolean(snapshot.get(VIRTUAL_THREADS)));
+			published = true;
+		} finally {
+			DependencyManager.stage(null);
+			CotopaxiProperty.stage(null);
+			if (!published) {
+				CotopaxiProperty.restore(previousProperties);
+			}
+		}
+	}
+
+	/**
+	 * Gets the application private temporary folder, provided by the servlet container.
+	 * 
+	 * @return the temporary folder, or <code>null</code> if the container doesn't provide one
+	 */
+	private File tempDir() {
+		ServletConfig config = this.getServletConfig();
+		if (config == null || config.getServletContext() == null) {
+			return null;
+		}
+		Object tempDir = config.getServletContext().getAttribute("javax.servlet.context.tempdir");
+		return (tempDir instanceof File) ? (File) tempDir : null;
+	}
+
+	/**
+	 * Loads the NOT_FOUND_PAGE, if defined, as a pre-rendered response.
+	 * 
+	 * @return The not found response, or <code>null</code> if there's no NOT_FOUND_PAGE.
+	 * @throws FileNotFoundException
+	 *             If the NOT_FOUND_PAGE file isn't found.
+	 */
+	private ControllerResponse loadNotFoundResponse(Snapshot snapshot) throws FileNotFoundException {
+		String page = snapshot.get(NOT_FOUND_PAGE);
+		if (page != null) {
+			try {
+				log.info("Using %s as not found page", page);
+				return new StaticResponse(404, "text/html", FileUtil.getBytes(page));
+			} catch (FileNotFoundException ex) {
+				throw ex;
+			} catch (IOException ex) {
+				log.error(ex, "Unable to read not found page %s. Using %s instead", page, snapshot.get(NOT_FOUND_TEMPLATE));
+				return null;
+			}
+		} else {
+			return null;
+		}
+	}
+
+	/**
+	 * Creates the virtual thread executor used to execute requests, if enabled, or shuts down the
+	 * current one, if disabled.
+	 */
+	private void loadRequestExecutor(boolean virtualThreads) {
+		if (virtualThreads && this.requestExecutor == null) {
+			if (!AsyncSupport.isAvailable()) {
+				log.warning("Container doesn't support asynchronous requests. Requests will be executed by container threads.");
+			} else {
+				this.requestExecutor = VirtualThreads.newExecutor();
+				if (this.requestExecutor == null) {
+					log.warning("JVM doesn't support virtual threads. Requests will be executed by container threads.");
+				}
+			}
+		} else if (!virtualThreads && this.requestExecutor != null) {
+			this.requestExecutor.shutdown();
+			this.requestExecutor = null;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.servlet.GenericServlet#destroy()
+	 */
+	@Override
+	public void destroy() {
+		if (this.requestExecutor != null) {
+			this.requestExecutor.shutdown();
+			this.requestExecutor = null;
+		}
+		super.destroy();
 	}
 
 	/**
@@ -150,46 +298,170 @@ public class CotopaxiServlet extends HttpServlet {
 	public void forceReset() {
 		CotopaxiProperty.forceReset();
 		DependencyManager.forceReset();
-		this.router.forceReset();
-		this.interceptor.forceReset();
-		this.executor.forceReset();
+		Application application = this.application;
+		application.router.forceReset();
+		application.interceptor.forceReset();
+		application.executor.forceReset();
 	}
 
+	/**
+	 * Reloads the configuration. The new configuration is booted off to the side, and its
+	 * properties, dependencies, routes, interceptors and executor are published together, so
+	 * requests being served keep working with the current configuration while it's reloaded.
+	 */
 	public void forceReload() throws FileNotFoundException, ConfigurationSyntaxException, ClassNotFoundException, InstantiationException,
 			IllegalAccessException {
-		this.forceReset();
 		this.loadConfiguration();
 	}
 
+	/**
+	 * Gets the {@link InterceptorManager} of the current configuration.
+	 */
+	protected InterceptorManager interceptor() {
+		return this.application.interceptor;
+	}
+
 	/**
 	 * Dispatches a request/response.
+	 * 
+	 * If VIRTUAL_THREADS is enabled, the request is put in asynchronous mode and executed on its
+	 * own virtual thread. Otherwise, it's executed by the current thread.
 	 */
-	public void deliver(HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+	public void deliver(final HttpServletRequest request, final HttpServletResponse response) throws IOException, ServletException {
+		ExecutorService requestExecutor = this.requestExecutor;
+		if (requestExecutor != null && AsyncSupport.isSupported(request)) {
+			final Object asyncContext;
+			try {
+				asyncContext = AsyncSupport.start(request, this.application.asyncTimeout);
+			} catch (Exception ex) {
+				throw new ServletException(ex);
+			}
+			Runnable task = new Runnable() {
+				@Override
+				public void run() {
+					try {
+						// virtual threads are cheap to block, so suspended controllers are awaited
+						CotopaxiServlet.this.execute(request, response, false);
+					} catch (Throwable t) {
+						log.error(t, "Unable to dispatch response for %s", request.getRequestURI());
+					} finally {
+						AsyncSupport.complete(asyncContext);
+					}
+				}
+			};
+			try {
+				requestExecutor.execute(task);
+			} catch (RejectedExecutionException ex) {
+				// executor shut down by a reload
+				task.run();
+			}
+		} else {
+			this.execute(request, response, this.application.asyncMode);
+		}
+	}
+
+	/**
+	 * Executes a request/response.
+	 * 
+	 * If the controller suspends the request, and the request can be suspended, it's put in
+	 * asynchronous mode and the response is dispatched by the thread that resumes the controller.
+	 * Otherwise, the current thread waits for the controller to be resumed.
+	 */
+	private void execute(HttpServletRequest request, HttpServletResponse response, boolean suspendable) throws IOException, ServletException {
+		Application application = this.application;
+		boolean finish = true;
 		try {
-			ControllerResponse controllerResponse = processRequest(request);
-			if (controllerResponse != null) {
-				processResponse(response, controllerResponse);
-			} else {
-				log.error("Cannot determine a ControllerResponse for url %s.\nDid you call some \"render\" method?", request.getRequestURI());
-				throw new ServletException("Cannot determine a ControllerResponse for request. Did you call some \"render\" method?");
+			ControllerResponse controllerResponse = this.processRequest(application, request);
+			if (controllerResponse instanceof Continuation) {
+				Continuation continuation = (Continuation) controllerResponse;
+				if (suspendable && AsyncSupport.isSupported(request)) {
+					this.deliverAsync(application, request, response, continuation);
+					finish = false;
+					return;
+				}
+				log.debug("Waiting for suspended controller for url %s", request.getRequestURI());
+				controllerResponse = continuation.await(application.asyncTimeout);
 			}
+			this.dispatch(application, request, response, controllerResponse);
 		} catch (Throwable t) {
-			log.warning(t, "Unexpected error executing controller for %s. Message: %s", request.getRequestURI(), t.getMessage());
-			Map<String, Object> output = new HashMap<String, Object>();
-			output.put(property(ERROR_PROPERTY), t);
-			ControllerResponse resp;
-			if (t instanceof Error) {
-				resp = new TemplateResponse("compilation_error.vm", 500, output, Locale.getDefault());
-			} else if (t instanceof VelocityException) {
-				resp = new TemplateResponse("template_error.vm", 500, output, Locale.getDefault());
-			} else {
-				resp = new TemplateResponse(property(ERROR_TEMPLATE), 500, output, request.getLocale());
-			}
-			processResponse(response, resp);
+			this.processError(application, request, response, t);
 		} finally {
-			this.interceptor.finish();
+			if (finish) {
+				application.interceptor.finish();
+			}
+			application.executor.release();
+		}
+	}
+
+	/**
+	 * Puts the request in asynchronous mode, and dispatches the response when the given
+	 * {@link Continuation} completes.
+	 */
+	private void deliverAsync(final Application application, final HttpServletRequest request, final HttpServletResponse response,
+			Continuation continuation) throws Exception {
+		final Object asyncContext = AsyncSupport.start(request, application.asyncTimeout);
+		log.debug("Request for url %s suspended", request.getRequestURI());
+		continuation.onComplete(new Continuation.Listener() {
+			@Override
+			public void completed(ControllerResponse controllerResponse, Throwable failure) {
+				try {
+					if (failure == null) {
+						CotopaxiServlet.this.dispatch(application, request, response, controllerResponse);
+					} else {
+						CotopaxiServlet.this.processError(application, request, response, failure);
+					}
+				} catch (Throwable t) {
+					log.error(t, "Unable to dispatch response for %s", request.getRequestURI());
+				} finally {
+					application.interceptor.finish();
+					AsyncSupport.complete(asyncContext);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Dispatches the given {@link ControllerResponse}, failing if there's no response.
+	 */
+	private void dispatch(Application application, HttpServletRequest request, HttpServletResponse response, ControllerResponse controllerResponse)
+			throws IOException, ServletException {
+		if (controllerResponse != null) {
+			this.respond(application, response, controllerResponse);
+		} else {
+			log.error("Cannot determine a ControllerResponse for url %s.\nDid you call some \"render\" method?", request.getRequestURI());
+			throw new ServletException("Cannot determine a ControllerResponse for request. Did you call some \"render\" method?");
+		}
+	}
+
+	/**
+	 * Dispatches the error page for the given error.
+	 */
+	private void processError(Application application, HttpServletRequest request, HttpServletResponse response, Throwable t) throws IOException,
+			ServletException {
+		log.warning(t, "Unexpected error executing controller for %s. Message: %s", request.getRequestURI(), t.getMessage());
+		Map<String, Object> output = new HashMap<String, Object>();
+		output.put(snapshot().get(ERROR_PROPERTY), t);
+		ControllerResponse resp;
+		if (t instanceof Error) {
+			resp = new TemplateResponse("compilation_error.vm", 500, output, Locale.getDefault());
+		} else if (t instanceof VelocityException) {
+			resp = new TemplateResponse("template_error.vm", 500, output, Locale.getDefault());
+		} else {
+			resp = new TemplateResponse(snapshot().get(ERROR_TEMPLATE), 500, output, request.getLocale());
 		}
+		this.respond(application, response, resp);
+	}
 
+	/**
+	 * Processes the given {@link ControllerResponse} and, for HEAD requests, sets the
+	 * Content-Length of the discarded body.
+	 */
+	private void respond(Application application, HttpServletResponse response, ControllerResponse controllerResponse) throws IOException,
+			ServletException {
+		this.processResponse(application.interceptor, response, controllerResponse);
+		if (response instanceof NoBodyResponse) {
+			((NoBodyResponse) response).finish();
+		}
 	}
 
 	/**
@@ -202,28 +474,77 @@ public class CotopaxiServlet extends HttpServlet {
 	 * @return The {@link ControllerResponse} for this request.
 	 */
 	protected ControllerResponse processRequest(HttpServletRequest request) throws Throwable {
-		try {
-			ControllerDescriptor controllerDesc = this.router.route(request);
-			return this.executor.execute(controllerDesc, request);
-		} catch (NotFoundExeption ex) {
-			return this.executor.execute(request, ex);
+		return this.processRequest(this.application, request);
+	}
+
+	private ControllerResponse processRequest(Application application, HttpServletRequest request) throws Throwable {
+		ControllerDescriptor controllerDesc = application.router.find(request);
+		if (controllerDesc != null) {
+			return application.executor.execute(controllerDesc, request);
+		}
+		String allowedMethods = application.router.allowedMethods(request);
+		if (allowedMethods != null) {
+			boolean options = HttpMethod.OPTIONS.name().equalsIgnoreCase(request.getMethod());
+			log.debug("Method %s for url %s answered with allowed methods: %s", request.getMethod(), request.getRequestURI(), allowedMethods);
+			return new AllowedMethodsResponse(options ? HttpServletResponse.SC_OK : HttpServletResponse.SC_METHOD_NOT_ALLOWED, allowedMethods);
+		} else if (application.notFoundResponse != null) {
+			log.debug("Cannot found a controller for url %s - %s.", request.getRequestURI(), request.getMethod());
+			return application.notFoundResponse;
+		} else {
+			return application.executor.execute(request, new NotFoundExeption(request.getRequestURI(), request.getMethod()));
 		}
 	}
 
+	/**
+	 * Process and dispatch the {@link ControllerResponse}, using the {@link InterceptorManager} of
+	 * the current configuration.
+	 * 
+	 * @see #processResponse(InterceptorManager, HttpServletResponse, ControllerResponse)
+	 */
+	protected void processResponse(HttpServletResponse response, ControllerResponse controllerResponse) throws IOException, ServletException {
+		this.processResponse(this.interceptor(), response, controllerResponse);
+	}
+
 	/**
 	 * Process and dispatch the {@link ControllerResponse}. This method is also responsible by
 	 * execute the necessaries {@link TemplateInterceptor}.
 	 * 
+	 * @param interceptor
+	 *            The {@link InterceptorManager} of the configuration the request was routed with
 	 * @param response
 	 *            The {@link HttpServletResponse} to be used to dispatch the
 	 *            {@link ControllerResponse}
 	 * @param controllerResponse
 	 *            The {@link ControllerResponse} to be dispatched.
 	 */
-	protected void processResponse(HttpServletResponse response, ControllerResponse controllerResponse) throws IOException, ServletException {
+	protected void processResponse(InterceptorManager interceptor, HttpServletResponse response, ControllerResponse controllerResponse)
+			throws IOException, ServletException {
 		if (controllerResponse instanceof TemplateResponse) {
-			this.interceptor.preRender((TemplateResponse) controllerResponse);
+			interceptor.preRender((TemplateResponse) controllerResponse);
 		}
 		controllerResponse.dispatch(response);
 	}
+
+	/**
+	 * The loaded configuration used to serve requests. It's published at once, so a request is
+	 * served by the routes, interceptors and executor of a single configuration.
+	 */
+	private static final class Application {
+		private final Router router;
+		private final InterceptorManager interceptor;
+		private final ControllerExecutor executor;
+		private final ControllerResponse notFoundResponse;
+		private final boolean asyncMode;
+		private final long asyncTimeout;
+
+		private Application(Router router, InterceptorManager interceptor, ControllerExecutor executor, ControllerResponse notFoundResponse,
+				boolean asyncMode, long asyncTimeout) {
+			this.router = router;
+			this.interceptor = interceptor;
+			this.executor = executor;
+			this.notFoundResponse = notFoundResponse;
+			this.asyncMode = asyncMode;
+			this.asyncTimeout = asyncTimeout;
+		}
+	}
 }
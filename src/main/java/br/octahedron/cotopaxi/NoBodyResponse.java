@@ -0,0 +1,130 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * A response to a HEAD request. The body is only counted, and discarded, so the Content-Length
+ * is the same of the GET response.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+final class NoBodyResponse extends HttpServletResponseWrapper {
+
+	private static final String CONTENT_LENGTH = "Content-Length";
+
+	private final CountingOutputStream body = new CountingOutputStream();
+	private PrintWriter writer;
+	private boolean lengthSet = false;
+
+	NoBodyResponse(HttpServletResponse response) {
+		super(response);
+	}
+
+	/**
+	 * Sets the Content-Length to the body length, unless the response has already set it.
+	 */
+	void finish() {
+		if (this.writer != null) {
+			this.writer.flush();
+		}
+		if (!this.lengthSet) {
+			super.setContentLength(this.body.count);
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.servlet.ServletResponseWrapper#getOutputStream()
+	 */
+	@Override
+	public ServletOutputStream getOutputStream() {
+		return this.body;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.servlet.ServletResponseWrapper#getWriter()
+	 */
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		if (this.writer == null) {
+			this.writer = new PrintWriter(new OutputStreamWriter(this.body, this.getCharacterEncoding()));
+		}
+		return this.writer;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.servlet.ServletResponseWrapper#setContentLength(int)
+	 */
+	@Override
+	public void setContentLength(int len) {
+		super.setContentLength(len);
+		this.lengthSet = true;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.servlet.http.HttpServletResponseWrapper#setHeader(java.lang.String,
+	 * java.lang.String)
+	 */
+	@Override
+	public void setHeader(String name, String value) {
+		super.setHeader(name, value);
+		this.lengthSet |= CONTENT_LENGTH.equalsIgnoreCase(name);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.servlet.http.HttpServletResponseWrapper#setIntHeader(java.lang.String, int)
+	 */
+	@Override
+	public void setIntHeader(String name, int value) {
+		super.setIntHeader(name, value);
+		this.lengthSet |= CONTENT_LENGTH.equalsIgnoreCase(name);
+	}
+
+	/**
+	 * Counts and discards the written bytes
+	 */
+	private static final class CountingOutputStream extends ServletOutputStream {
+		private int count = 0;
+
+		@Override
+		public void write(int b) {
+			this.count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			this.count += len;
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import br.octahedron.util.Log;
+
+/**
+ * Access to the JVM virtual threads. Cotopaxi is built for older JVMs, so the virtual thread
+ * executor is looked up when this class is loaded, and it's only available if the running JVM
+ * provides it.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+final class VirtualThreads {
+
+	private static final Log log = new Log(VirtualThreads.class);
+	private static final Method NEW_EXECUTOR;
+
+	static {
+		Method newExecutor = null;
+		try {
+			newExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		} catch (NoSuchMethodException ex) {
+			log.debug("Virtual threads aren't available at this JVM");
+		}
+		NEW_EXECUTOR = newExecutor;
+	}
+
+	private VirtualThreads() {
+		// static methods only
+	}
+
+	/**
+	 * Checks if the running JVM supports virtual threads
+	 */
+	protected static boolean isAvailable() {
+		return NEW_EXECUTOR != null;
+	}
+
+	/**
+	 * Creates an {@link ExecutorService} that executes each task on a new virtual thread.
+	 * 
+	 * @return the executor, or <code>null</code> if virtual threads aren't available
+	 */
+	protected static ExecutorService newExecutor() {
+		if (isAvailable()) {
+			try {
+				return (ExecutorService) NEW_EXECUTOR.invoke(null);
+			} catch (Exception ex) {
+				log.warning("Unable to create virtual thread executor: %s", ex.toString());
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import br.octahedron.cotopaxi.controller.ControllerDescriptor;
+
+/**
+ * The content of a configuration file: its properties, dependencies, interceptors, bootloaders
+ * and controllers, in the order they were declared.
+ * 
+ * It's the result of parsing a configuration file, and can also be built by generated code, so
+ * the file doesn't need to be parsed at startup.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class Configuration {
+
+	private final String checksum;
+	private final List<String[]> properties = new ArrayList<String[]>();
+	private final List<String[]> dependencies = new ArrayList<String[]>();
+	private final List<String> interceptors = new ArrayList<String>();
+	private final List<String> bootloaders = new ArrayList<String>();
+	private final List<ControllerDescriptor> controllers = new ArrayList<ControllerDescriptor>();
+
+	/**
+	 * @param checksum
+	 *            The checksum of the configuration file content
+	 */
+	public Configuration(String checksum) {
+		this.checksum = checksum;
+	}
+
+	public void addProperty(String name, String value) {
+		this.properties.add(new String[] { name, value });
+	}
+
+	public void addDependency(String ifClass, String implClass) {
+		this.dependencies.add(new String[] { ifClass, implClass });
+	}
+
+	public void addInterceptor(String interceptorClass) {
+		this.interceptors.add(interceptorClass);
+	}
+
+	public void addBootloader(String bootloaderClass) {
+		this.bootloaders.add(bootloaderClass);
+	}
+
+	public void addController(ControllerDescriptor controllerDesc) {
+		this.controllers.add(controllerDesc);
+	}
+
+	/**
+	 * @return the checksum of the configuration file content
+	 */
+	public String getChecksum() {
+		return this.checksum;
+	}
+
+	/**
+	 * @return the properties, as [name, value] pairs
+	 */
+	public List<String[]> getProperties() {
+		return Collections.unmodifiableList(this.properties);
+	}
+
+	/**
+	 * @return the dependencies, as [interface, implementation] pairs
+	 */
+	public List<String[]> getDependencies() {
+		return Collections.unmodifiableList(this.dependencies);
+	}
+
+	public List<String> getInterceptors() {
+		return Collections.unmodifiableList(this.interceptors);
+	}
+
+	public List<String> getBootloaders() {
+		return Collections.unmodifiableList(this.bootloaders);
+	}
+
+	public List<ControllerDescriptor> getControllers() {
+		return Collections.unmodifiableList(this.controllers);
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.config;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.Principal;
+import java.util.List;
+
+import br.octahedron.cotopaxi.controller.ControllerDescriptor;
+import br.octahedron.util.FileUtil;
+import br.octahedron.util.Log;
+
+/**
+ * Stores a parsed {@link Configuration} in a compact binary file, so the next boots can load it
+ * instead of parsing the configuration file again. A cached configuration is only loaded if it
+ * was parsed from a configuration file with the same checksum.
+ * 
+ * The file format is: a magic number and the format version, followed by the configuration
+ * checksum, properties, dependencies, interceptors, bootloaders and controllers. Each list is
+ * preceded by its size, and each string is stored as its UTF-8 bytes, preceded by their length.
+ * 
+ * A cached configuration is trusted as the configuration file itself, so it's only read if the
+ * file is owned by the user running the application. The owner can't be checked before Java 7, so
+ * on older JVMs the cache file should be kept at a folder only the application can write.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+final class ConfigurationCache {
+
+	private static final Log log = new Log(ConfigurationCache.class);
+	private static final int MAGIC = 0x43545058; // CTPX
+	private static final int VERSION = 1;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private ConfigurationCache() {
+		// static methods only
+	}
+
+	/**
+	 * Reads the configuration cached at the given file.
+	 * 
+	 * @return The cached {@link Configuration}, or <code>null</code> if there's no cached
+	 *         configuration, or if it was parsed from another configuration file.
+	 */
+	static Configuration read(File file, String checksum) {
+		if (!file.isFile()) {
+			return null;
+		}
+		if (!isOwned(file)) {
+			log.warning("Configuration cache %s isn't owned by %s. Ignoring it", file, System.getProperty("user.name"));
+			return null;
+		}
+		try {
+			ByteBuffer buf = ByteBuffer.wrap(FileUtil.getBytes(new FileInputStream(file)));
+			if (buf.getInt() != MAGIC || buf.getInt() != VERSION || !checksum.equals(readString(buf))) {
+				return null;
+			}
+			Configuration configuration = new Configuration(checksum);
+			for (int i = buf.getInt(); i > 0; i--) {
+				configuration.addProperty(readString(buf), readString(buf));
+			}
+			for (int i = buf.getInt(); i > 0; i--) {
+				configuration.addDependency(readString(buf), readString(buf));
+			}
+			for (int i = buf.getInt(); i > 0; i--) {
+				configuration.addInterceptor(readString(buf));
+			}
+			for (int i = buf.getInt(); i > 0; i--) {
+				configuration.addBootloader(readString(buf));
+			}
+			for (int i = buf.getInt(); i > 0; i--) {
+				String url = readString(buf);
+				String httpMethod = readString(buf);
+				String controllerName = readString(buf);
+				String controllerClass = readString(buf);
+				configuration.addController(new ControllerDescriptor(url, httpMethod, controllerName, controllerClass));
+			}
+			return configuration;
+		} catch (IOException ex) {
+			log.warning("Unable to read configuration cache %s: %s", file, ex.toString());
+		} catch (BufferUnderflowException ex) {
+			log.warning("Configuration cache %s is corrupted", file);
+		} catch (IllegalArgumentException ex) {
+			log.warning("Configuration cache %s is corrupted", file);
+		}
+		return null;
+	}
+
+	/**
+	 * Checks if the given file is owned by the user running the application. The owner is read
+	 * using the Java 7 file API, through reflection. If it isn't available, the file is assumed to
+	 * be owned by the application.
+	 */
+	static boolean isOwned(File file) {
+		Object path;
+		Method getOwner;
+		Object noOptions;
+		try {
+			path = File.class.getMethod("toPath").invoke(file);
+			Class<?> linkOption = Class.forName("java.nio.file.LinkOption");
+			noOptions = Array.newInstance(linkOption, 0);
+			getOwner = Class.forName("java.nio.file.Files").getMethod("getOwner", Class.forName("java.nio.file.Path"), noOptions.getClass());
+		} catch (Exception ex) {
+			log.debug("Unable to check the owner of %s: %s", file, ex.toString());
+			return true;
+		}
+		try {
+			Principal owner = (Principal) getOwner.invoke(null, path, noOptions);
+			return owner.getName().equals(System.getProperty("user.name"));
+		} catch (Exception ex) {
+			// the file system can't tell the owner
+			log.warning("Unable to check the owner of %s: %s", file, ex.toString());
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the given configuration to the given file. The configuration is written to a
+	 * temporary file, that replaces the given one, so a concurrent boot never reads it partially.
+	 * 
+	 * @return <code>true</code> if the configuration was cached, <code>false</code> otherwise.
+	 */
+	static boolean write(File file, Configuration configuration) {
+		File tmp = new File(file.getPath() + ".tmp");
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				writeString(out, configuration.getChecksum());
+				writePairs(out, configuration.getProperties());
+				writePairs(out, configuration.getDependencies());
+				writeStrings(out, configuration.getInterceptors());
+				writeStrings(out, configuration.getBootloaders());
+				out.writeInt(configuration.getControllers().size());
+				for (ControllerDescriptor controller : configuration.getControllers()) {
+					writeString(out, controller.getUrl());
+					writeString(out, controller.getHttpMethod());
+					writeString(out, controller.getControllerName());
+					writeString(out, controller.getControllerClass());
+				}
+			} finally {
+				out.close();
+			}
+			if (!tmp.renameTo(file)) {
+				// some platforms don't replace existing files on rename
+				file.delete();
+				if (!tmp.renameTo(file)) {
+					throw new IOException("Unable to replace " + file);
+				}
+			}
+			return true;
+		} catch (IOException ex) {
+			log.debug("Unable to write configuration cache %s: %s", file, ex.toString());
+		} catch (SecurityException ex) {
+			log.debug("Unable to write configuration cache %s: %s", file, ex.toString());
+		}
+		tmp.delete();
+		return false;
+	}
+
+	private static void writePairs(DataOutputStream out, List<String[]> pairs) throws IOException {
+		out.writeInt(pairs.size());
+		for (String[] pair : pairs) {
+			writeString(out, pair[0]);
+			writeString(out, pair[1]);
+		}
+	}
+
+	private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+		out.writeInt(strings.size());
+		for (String string : strings) {
+			writeString(out, string);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String string) throws IOException {
+		byte[] bytes = string.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buf) {
+		int length = buf.getInt();
+		if (length < 0 || length > buf.remaining()) {
+			throw new IllegalArgumentException("Invalid string length: " + length);
+		}
+		String string = new String(buf.array(), buf.position(), length, UTF8);
+		buf.position(buf.position() + length);
+		return string;
+	}
+}
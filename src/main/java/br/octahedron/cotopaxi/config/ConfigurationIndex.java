@@ -0,0 +1,37 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.config;
+
+/**
+ * A {@link Configuration} compiled at build time, by the
+ * {@link br.octahedron.cotopaxi.processor.CotopaxiProcessor}. If there's a compiled configuration
+ * for the current configuration file, the file isn't parsed at startup.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public interface ConfigurationIndex {
+
+	/**
+	 * The name of the generated {@link ConfigurationIndex} class
+	 */
+	public static final String CLASS_NAME = "br.octahedron.cotopaxi.config.CompiledConfiguration";
+
+	/**
+	 * @return the compiled {@link Configuration}
+	 */
+	public Configuration configuration();
+}
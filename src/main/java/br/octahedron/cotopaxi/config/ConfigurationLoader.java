@@ -16,11 +16,16 @@
  */
 package br.octahedron.cotopaxi.config;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
 
 import br.octahedron.cotopaxi.Bootloader.Booter;
+import br.octahedron.cotopaxi.CotopaxiProperty;
 import br.octahedron.cotopaxi.config.ConfigurationParser.Token;
 import br.octahedron.cotopaxi.config.ConfigurationParser.TokenType;
 import br.octahedron.cotopaxi.controller.ControllerDescriptor;
@@ -33,6 +38,12 @@ import br.octahedron.util.Log;
 /**
  * Loads the configuration file
  * 
+ * The file is parsed to a {@link Configuration}, that is applied to the framework. If there's a
+ * {@link ConfigurationIndex} compiled from the same file content, it's used instead of parsing the
+ * file. Otherwise, the parsed configuration is cached at the
+ * {@link CotopaxiProperty#CONFIGURATION_CACHE} file, and loaded from there by the next boots while
+ * the file content doesn't change.
+ * 
  * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
  */
 public class ConfigurationLoader {
@@ -43,24 +54,182 @@ public class ConfigurationLoader {
 	private InterceptorManager interceptor;
 	private Router router;
 	private Booter booter;
+	private byte[] content;
+	private String checksum;
+	private File cacheFile;
+	private Configuration configuration;
+	private boolean staging;
 
 	public ConfigurationLoader(Router router, InterceptorManager interceptor, Booter booter) throws FileNotFoundException {
-		this.parser = new ConfigurationParser(FileUtil.getInputStream(CONFIGURATION_FILENAME));
-		this.router = router;
-		this.interceptor = interceptor;
+		this(router, interceptor, booter, cacheFile(CotopaxiProperty.property(CotopaxiProperty.CONFIGURATION_CACHE), null));
+	}
+
+	/**
+	 * Creates a loader for the configuration file.
+	 * 
+	 * @param cacheFile
+	 *            the file where the configuration is cached, or <code>null</code> if it shouldn't
+	 *            be cached.
+	 * @see #cacheFile(String, File)
+	 */
+	public ConfigurationLoader(Router router, InterceptorManager interceptor, Booter booter, File cacheFile) throws FileNotFoundException {
+		this(router, interceptor, FileUtil.getInputStream(CONFIGURATION_FILENAME));
 		this.booter = booter;
+		this.cacheFile = cacheFile;
+	}
+
+	protected ConfigurationLoader(Router router, InterceptorManager interceptor, InputStream in) throws FileNotFoundException {
+		this(router, interceptor, read(in));
 	}
 
-	protected ConfigurationLoader(Router router, InterceptorManager interceptor, InputStream in) {
-		this.parser = new ConfigurationParser(in);
+	private ConfigurationLoader(Router router, InterceptorManager interceptor, byte[] content) {
+		this.content = content;
+		this.checksum = checksum(content);
 		this.router = router;
 		this.interceptor = interceptor;
 	}
 
+	/**
+	 * Parses the given configuration file content.
+	 */
+	public static Configuration parse(byte[] content) throws ConfigurationSyntaxException {
+		return new ConfigurationLoader(null, null, content).parse();
+	}
+
+	/**
+	 * Calculates the checksum for the given configuration file content.
+	 */
+	public static String checksum(byte[] content) {
+		CRC32 crc = new CRC32();
+		crc.update(content);
+		return Long.toHexString(crc.getValue()) + ":" + Integer.toHexString(content.length);
+	}
+
+	private static byte[] read(InputStream in) throws FileNotFoundException {
+		try {
+			return FileUtil.getBytes(in);
+		} catch (IOException ex) {
+			FileNotFoundException fnf = new FileNotFoundException("Unable to read configuration file: " + ex.getMessage());
+			fnf.initCause(ex);
+			throw fnf;
+		}
+	}
+
+	/**
+	 * Gets the file to cache the configuration. Relative paths are resolved against the given
+	 * temporary folder.
+	 * 
+	 * @param cache
+	 *            the {@link CotopaxiProperty#CONFIGURATION_CACHE} value
+	 * @param tempDir
+	 *            the application private temporary folder. It may be <code>null</code>.
+	 * @return the cache file, or <code>null</code> if the configuration shouldn't be cached
+	 */
+	public static File cacheFile(String cache, File tempDir) {
+		if (cache == null) {
+			return null;
+		}
+		File file = new File(cache);
+		if (file.isAbsolute()) {
+			return file;
+		} else if (tempDir != null) {
+			return new File(tempDir, cache);
+		} else {
+			log.warning("There's no application temporary folder to cache the configuration at %s. Configuration won't be cached", cache);
+			return null;
+		}
+	}
+
 	/**
 	 * Loads configuration file from disk
 	 */
 	public void loadConfiguration() throws ConfigurationSyntaxException, ClassNotFoundException, InstantiationException, IllegalAccessException {
+		this.staging = false;
+		this.apply(this.readConfiguration());
+	}
+
+	/**
+	 * Loads configuration file from disk, staging the properties {@link CotopaxiProperty.Snapshot}
+	 * for the current thread instead of publishing it. The caller publishes it when the rest of
+	 * the configuration is ready.
+	 * 
+	 * @return the staged {@link CotopaxiProperty.Snapshot}
+	 */
+	public CotopaxiProperty.Snapshot stageConfiguration() throws ConfigurationSyntaxException, ClassNotFoundException, InstantiationException,
+			IllegalAccessException {
+		this.staging = true;
+		this.apply(this.readConfiguration());
+		return CotopaxiProperty.staged();
+	}
+
+	/**
+	 * Gets the configuration: compiled, cached or parsed from the configuration file.
+	 */
+	private Configuration readConfiguration() throws ConfigurationSyntaxException {
+		Configuration configuration = this.compiledConfiguration();
+		if (configuration == null) {
+			configuration = this.cachedConfiguration();
+		}
+		if (configuration == null) {
+			configuration = this.parse();
+			if (this.cacheFile != null && ConfigurationCache.write(this.cacheFile, configuration)) {
+				log.info("Configuration cached at %s", this.cacheFile);
+			}
+		}
+		return configuration;
+	}
+
+	/**
+	 * Gets the cached configuration, if there's one for the current configuration file.
+	 * 
+	 * @return the cached {@link Configuration}, or <code>null</code> if there's no cached
+	 *         configuration or if it was cached from another configuration file.
+	 */
+	protected Configuration cachedConfiguration() {
+		if (this.cacheFile == null) {
+			return null;
+		}
+		Configuration configuration = ConfigurationCache.read(this.cacheFile, this.checksum);
+		if (configuration != null) {
+			log.info("Using configuration cached at %s", this.cacheFile);
+		}
+		return configuration;
+	}
+
+	/**
+	 * Gets the compiled configuration, if there's one for the current configuration file.
+	 * 
+	 * @return the compiled {@link Configuration}, or <code>null</code> if there's no compiled
+	 *         configuration or if it was compiled from another configuration file.
+	 */
+	protected Configuration compiledConfiguration() {
+		Class<?> indexClass;
+		try {
+			indexClass = Class.forName(ConfigurationIndex.CLASS_NAME);
+		} catch (ClassNotFoundException ex) {
+			log.debug("There's no compiled configuration. Parsing configuration file");
+			return null;
+		}
+		try {
+			Configuration configuration = ((ConfigurationIndex) indexClass.newInstance()).configuration();
+			if (configuration.getChecksum().equals(this.checksum)) {
+				log.info("Using compiled configuration");
+				return configuration;
+			} else {
+				log.info("Compiled configuration is outdated. Parsing configuration file");
+			}
+		} catch (Exception ex) {
+			log.warning("Unable to load compiled configuration: %s. Parsing configuration file", ex.toString());
+		}
+		return null;
+	}
+
+	/**
+	 * Parses the configuration file
+	 */
+	protected Configuration parse() throws ConfigurationSyntaxException {
+		this.parser = new ConfigurationParser(new ByteArrayInputStream(this.content));
+		this.configuration = new Configuration(this.checksum);
 		try {
 			while (true) {
 				Token tk = parser.nextToken();
@@ -69,9 +238,42 @@ public class ConfigurationLoader {
 		} catch (NoSuchElementException ex) {
 			log.info("End of file reached.");
 		}
+		return this.configuration;
+	}
+
+	/**
+	 * Applies the given configuration. Properties are set, and resolved to a new
+	 * {@link CotopaxiProperty.Snapshot}, and dependencies are registered before interceptors and
+	 * bootloaders are created.
+	 */
+	protected void apply(Configuration configuration) throws ClassNotFoundException, InstantiationException, IllegalAccessException {
+		for (String[] property : configuration.getProperties()) {
+			log.info("Configuration property found: %s -> %s", property[0], property[1]);
+			System.setProperty(property[0], property[1]);
+		}
+		if (this.staging) {
+			CotopaxiProperty.stage(CotopaxiProperty.resolve());
+		} else {
+			// publishes the properties to be read while serving requests
+			CotopaxiProperty.refresh();
+		}
+		for (String[] dependency : configuration.getDependencies()) {
+			log.info("Configuration dependency found: %s -> %s", dependency[0], dependency[1]);
+			DependencyManager.registerDependency(dependency[0], dependency[1]);
+		}
+		for (String interceptorClass : configuration.getInterceptors()) {
+			log.info("Configuration interceptor found: %s", interceptorClass);
+			this.interceptor.addInterceptor(interceptorClass);
+		}
+		for (String bootloader : configuration.getBootloaders()) {
+			log.info("Configuration bootloader found: %s", bootloader);
+			this.booter.addBootloader(bootloader);
+		}
+		// routes are set at once, replacing the previous ones
+		this.router.setRoutes(configuration.getControllers());
 	}
 
-	private void process(Token tk) throws ConfigurationSyntaxException, ClassNotFoundException, InstantiationException, IllegalAccessException {
+	private void process(Token tk) throws ConfigurationSyntaxException {
 		try {
 			switch (tk.getTokenType()) {
 			case CONTROLLERS:
@@ -102,12 +304,11 @@ public class ConfigurationLoader {
 		}
 	}
 
-	private void processDependencies() throws UnexpectedTokenException, ClassNotFoundException {
+	private void processDependencies() throws UnexpectedTokenException {
 		do {
 			String ifClass = this.getContent(TokenType.CLASS);
 			String implClass = this.getContent(TokenType.CLASS);
-			log.info("Configuration dependency found: %s -> %s", ifClass, implClass);
-			DependencyManager.registerDependency(ifClass, implClass);
+			this.configuration.addDependency(ifClass, implClass);
 		} while (true);
 	}
 
@@ -115,24 +316,21 @@ public class ConfigurationLoader {
 		do {
 			String propertyName = this.getContent(TokenType.PROPERTY);
 			String propertyValue = this.getContent(TokenType.STRING, TokenType.CLASS);
-			log.info("Configuration property found: %s -> %s", propertyName, propertyValue);
-			System.setProperty(propertyName, propertyValue);
+			this.configuration.addProperty(propertyName, propertyValue);
 		} while (true);
 	}
 
-	private void processInterceptors() throws UnexpectedTokenException, ClassNotFoundException, InstantiationException, IllegalAccessException {
+	private void processInterceptors() throws UnexpectedTokenException {
 		do {
 			String className = this.getContent(TokenType.CLASS);
-			log.info("Configuration interceptor found: %s", className);
-			interceptor.addInterceptor(className);
+			this.configuration.addInterceptor(className);
 		} while (true);
 	}
 
-	private void processBootloaders() throws UnexpectedTokenException, InstantiationException, IllegalAccessException, ClassNotFoundException {
+	private void processBootloaders() throws UnexpectedTokenException {
 		do {
 			String bootloader = this.getContent(TokenType.CLASS);
-			log.info("Configuration bootloader found: %s", bootloader);
-			this.booter.addBootloader(bootloader);
+			this.configuration.addBootloader(bootloader);
 		} while (true);
 	}
 
@@ -155,7 +353,7 @@ public class ConfigurationLoader {
 			String method = this.getContent(TokenType.STRING);
 			String controllerName = this.getContent(TokenType.STRING);
 			log.info("Adding controller descriptor %s - %s - %s - %s", controllerClass, url, method, controllerName);
-			this.router.addRoute(new ControllerDescriptor(url, method, controllerName, controllerClass));
+			this.configuration.addController(new ControllerDescriptor(url, method, controllerName, controllerClass));
 		} while (true);
 	}
 
@@ -0,0 +1,71 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.controller;
+
+import br.octahedron.cotopaxi.inject.RequestScope;
+
+/**
+ * Carries the {@link ControllerContext} of the request being executed by the current thread.
+ * 
+ * Contexts are bound for a scope: the request execution, from the controller to the response
+ * rendering, or a {@link Continuation} resume. Each scope restores the previous binding when it
+ * ends, so a thread doesn't keep a request's context after serving it, and a request can be
+ * executed by any thread - a container thread, a virtual thread or the thread that resumes it.
+ * 
+ * The context's {@link RequestScope} is bound along with it.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+final class ContextCarrier {
+
+	private static final ThreadLocal<ControllerContext> contexts = new ThreadLocal<ControllerContext>();
+
+	private ContextCarrier() {
+		// static methods only
+	}
+
+	/**
+	 * @return the context bound to the current scope, or <code>null</code> if there's none.
+	 */
+	static ControllerContext current() {
+		return contexts.get();
+	}
+
+	/**
+	 * Binds the given context to the current scope.
+	 * 
+	 * @return the previously bound context, to be restored when the scope ends.
+	 */
+	static ControllerContext bind(ControllerContext context) {
+		ControllerContext previous = contexts.get();
+		contexts.set(context);
+		RequestScope.bind((context != null) ? context.getRequestScope() : null);
+		return previous;
+	}
+
+	/**
+	 * Ends the current scope, restoring the given context.
+	 * 
+	 * @param previous
+	 *            the context bound before the scope, or <code>null</code> if there was none.
+	 */
+	static void restore(ControllerContext previous) {
+		// the thread's entry is kept, so binding the next request doesn't allocate it again
+		contexts.set(previous);
+		RequestScope.bind((previous != null) ? previous.getRequestScope() : null);
+	}
+}
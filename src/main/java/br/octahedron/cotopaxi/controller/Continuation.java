@@ -0,0 +1,236 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.controller;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A suspended {@link Controller} execution. It's created by {@link Controller#suspend()} and
+ * should be resumed, usually by another thread, once the data needed to answer the request is
+ * available.
+ * 
+ * The action given to {@link #resume(Runnable)} runs with the suspended {@link ControllerContext}
+ * bound, so it can use the {@link Controller} methods to render the response, or to forward it to
+ * another controller. Once resumed, the request's {@link ControllerResponse} is delivered to the
+ * registered {@link Listener}, or to whom is waiting for it.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public final class Continuation implements ControllerResponse {
+
+	/**
+	 * Listener notified when a {@link Continuation} is completed.
+	 */
+	public interface Listener {
+		/**
+		 * @param response
+		 *            the {@link ControllerResponse} for the request, or <code>null</code> if it
+		 *            failed
+		 * @param failure
+		 *            the error thrown while resuming the request, or <code>null</code> if it
+		 *            succeeded
+		 */
+		public void completed(ControllerResponse response, Throwable failure);
+	}
+
+	private final ControllerContext context;
+	private final Thread owner;
+	private ControllerExecutor executor;
+	private boolean resumed = false;
+	private boolean done = false;
+	private ControllerResponse response;
+	private Throwable failure;
+	private Listener listener;
+
+	protected Continuation(ControllerContext context) {
+		this.context = context;
+		this.owner = Thread.currentThread();
+	}
+
+	/**
+	 * Hands this continuation to the {@link ControllerExecutor} that will proceed with the request
+	 * once it's resumed.
+	 */
+	protected synchronized void prepare(ControllerExecutor executor) {
+		this.executor = executor;
+		this.notifyAll();
+	}
+
+	/**
+	 * Resumes the suspended request, executing the given action with the request's
+	 * {@link ControllerContext}. The action is expected to answer or forward the request, or to
+	 * suspend it again.
+	 * 
+	 * @param action
+	 *            the action to be executed, or <code>null</code> if the request was already
+	 *            answered.
+	 * @throws IllegalStateException
+	 *             if this continuation was already resumed, or if it's resumed by the controller
+	 *             that suspended it.
+	 */
+	public void resume(Runnable action) {
+		this.awaitPrepare();
+		// the response is completed with the context bound, since it's rendered by the listener
+		ControllerContext previous = ContextCarrier.bind(this.context);
+		try {
+			ControllerResponse result = null;
+			Throwable error = null;
+			this.context.resumed();
+			try {
+				if (action != null) {
+					action.run();
+				}
+				result = this.executor.proceed(this.context);
+			} catch (Throwable t) {
+				error = t;
+			}
+			if (result instanceof Continuation) {
+				// suspended again
+				((Continuation) result).onComplete(new Listener() {
+					@Override
+					public void completed(ControllerResponse response, Throwable failure) {
+						Continuation.this.complete(response, failure);
+					}
+				});
+			} else {
+				this.complete(result, error);
+			}
+		} finally {
+			ContextCarrier.restore(previous);
+		}
+	}
+
+	/**
+	 * Registers the {@link Listener} to be notified when this continuation completes. If it's
+	 * already completed, the listener is notified immediately.
+	 * 
+	 * @throws IllegalStateException
+	 *             if a listener was already registered
+	 */
+	public void onComplete(Listener listener) {
+		ControllerResponse response;
+		Throwable failure;
+		synchronized (this) {
+			if (this.listener != null) {
+				throw new IllegalStateException("Continuation listener already registered");
+			}
+			this.listener = listener;
+			if (!this.done) {
+				return;
+			}
+			response = this.response;
+			failure = this.failure;
+		}
+		listener.completed(response, failure);
+	}
+
+	/**
+	 * Checks if this continuation was resumed and completed.
+	 */
+	public synchronized boolean isDone() {
+		return this.done;
+	}
+
+	/**
+	 * Waits until this continuation completes.
+	 * 
+	 * @param timeout
+	 *            the maximum time to wait, in milliseconds. If 0, waits forever.
+	 * @return the {@link ControllerResponse} for the request
+	 * @throws TimeoutException
+	 *             if the continuation isn't completed in time
+	 * @throws Throwable
+	 *             the error thrown while resuming the request
+	 */
+	public synchronized ControllerResponse await(long timeout) throws Throwable {
+		long deadline = System.currentTimeMillis() + timeout;
+		while (!this.done) {
+			long remaining = (timeout > 0) ? deadline - System.currentTimeMillis() : 0;
+			if (timeout > 0 && remaining <= 0) {
+				throw new TimeoutException("Controller " + this.context.getControllerDescriptor() + " not resumed in " + timeout + "ms");
+			}
+			this.wait(remaining);
+		}
+		if (this.failure != null) {
+			throw this.failure;
+		}
+		return this.response;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see br.octahedron.cotopaxi.controller.ControllerResponse#dispatch(javax.servlet.http.
+	 * HttpServletResponse)
+	 */
+	@Override
+	public void dispatch(HttpServletResponse servletResponse) throws IOException {
+		ControllerResponse response;
+		try {
+			response = this.await(0);
+		} catch (IOException ex) {
+			throw ex;
+		} catch (RuntimeException ex) {
+			throw ex;
+		} catch (Throwable t) {
+			throw new IOException(t);
+		}
+		response.dispatch(servletResponse);
+	}
+
+	/**
+	 * Waits until the executor prepares this continuation. It happens as soon the suspended
+	 * controller returns, so it only blocks if the continuation is resumed before that.
+	 */
+	private synchronized void awaitPrepare() {
+		if (this.resumed) {
+			throw new IllegalStateException("Continuation already resumed");
+		}
+		if (this.executor == null && Thread.currentThread() == this.owner) {
+			throw new IllegalStateException("Continuation can't be resumed by the controller that suspended it");
+		}
+		this.resumed = true;
+		boolean interrupted = false;
+		while (this.executor == null) {
+			try {
+				this.wait();
+			} catch (InterruptedException ex) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void complete(ControllerResponse response, Throwable failure) {
+		Listener listener;
+		synchronized (this) {
+			this.response = response;
+			this.failure = failure;
+			this.done = true;
+			listener = this.listener;
+			this.notifyAll();
+		}
+		if (listener != null) {
+			listener.completed(response, failure);
+		}
+	}
+}
@@ -20,7 +20,7 @@ import static br.octahedron.cotopaxi.CotopaxiProperty.ERROR_TEMPLATE;
 import static br.octahedron.cotopaxi.CotopaxiProperty.FORBIDDEN_TEMPLATE;
 import static br.octahedron.cotopaxi.CotopaxiProperty.INVALID_TEMPLATE;
 import static br.octahedron.cotopaxi.CotopaxiProperty.NOT_FOUND_TEMPLATE;
-import static br.octahedron.cotopaxi.CotopaxiProperty.property;
+import static br.octahedron.cotopaxi.CotopaxiProperty.snapshot;
 import static br.octahedron.cotopaxi.controller.ControllerContext.getContext;
 
 import java.util.Iterator;
@@ -29,10 +29,8 @@ import java.util.Map;
 
 import javax.servlet.http.HttpSession;
 
-import br.octahedron.cotopaxi.view.response.JSONResponse;
 import br.octahedron.cotopaxi.view.response.RedirectResponse;
 import br.octahedron.cotopaxi.view.response.SimpleTextResponse;
-import br.octahedron.cotopaxi.view.response.TemplateResponse;
 
 /**
  * The base class for Controllers and Middleware controller.
@@ -215,6 +213,18 @@ public abstract class Controller extends InputController {
 		getContext().setControllerResponse(response);
 	}
 
+	/**
+	 * Suspends the current request. The request is answered when the returned
+	 * {@link Continuation} is resumed, usually by another thread, with an action that renders the
+	 * response using this controller's methods.
+	 * 
+	 * If the ASYNC_MODE is enabled and the container supports it, the container's thread is
+	 * released while the request is suspended.
+	 */
+	protected final Continuation suspend() {
+		return getContext().suspend();
+	}
+
 	/**
 	 * Render the given template with SUCCESS (200) code
 	 * 
@@ -251,7 +261,7 @@ public abstract class Controller extends InputController {
 	 * Render the default SERVER ERROR (500) page
 	 */
 	protected final void error() {
-		this.render(property(ERROR_TEMPLATE), 500);
+		this.render(snapshot().get(ERROR_TEMPLATE), 500);
 	}
 
 	/**
@@ -267,7 +277,7 @@ public abstract class Controller extends InputController {
 	 * Render the default NOT FOUND (404) page
 	 */
 	protected final void notFound() {
-		this.render(property(NOT_FOUND_TEMPLATE), 404);
+		this.render(snapshot().get(NOT_FOUND_TEMPLATE), 404);
 	}
 
 	/**
@@ -283,7 +293,7 @@ public abstract class Controller extends InputController {
 	 * Render the default FORBIDDEN (403) page
 	 */
 	protected final void forbidden() {
-		this.render(property(FORBIDDEN_TEMPLATE), 403);
+		this.render(snapshot().get(FORBIDDEN_TEMPLATE), 403);
 	}
 
 	/**
@@ -299,7 +309,7 @@ public abstract class Controller extends InputController {
 	 * Render the default BAD REQUEST (400) page
 	 */
 	protected final void invalid() {
-		this.render(property(INVALID_TEMPLATE), 400);
+		this.render(snapshot().get(INVALID_TEMPLATE), 400);
 	}
 
 	/**
@@ -317,7 +327,7 @@ public abstract class Controller extends InputController {
 	 */
 	protected final void render(String template, int code) {
 		if (!this.isAnswered()) {
-			this.setControllerResponse(new TemplateResponse(template, code, getContext()));
+			this.setControllerResponse(getContext().templateResponse(template, code));
 		} else {
 			throw new IllegalStateException("Response already defined");
 		}
@@ -353,7 +363,7 @@ public abstract class Controller extends InputController {
 	 */
 	protected final void asJSON(int code) {
 		if (!this.isAnswered()) {
-			this.setControllerResponse(new JSONResponse(code, getContext()));
+			this.setControllerResponse(getContext().jsonResponse(code));
 		} else {
 			throw new IllegalStateException("Response already defined");
 		}
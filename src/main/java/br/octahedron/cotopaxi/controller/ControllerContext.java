@@ -16,7 +16,6 @@
  */
 package br.octahedron.cotopaxi.controller;
 
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Locale;
 import java.util.Map;
@@ -25,6 +24,11 @@ import java.util.Set;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 
+import br.octahedron.cotopaxi.inject.RequestScope;
+import br.octahedron.cotopaxi.view.response.JSONResponse;
+import br.octahedron.cotopaxi.view.response.TemplateResponse;
+import br.octahedron.util.CompactMap;
+
 /**
  * Holds the current context for a {@link Controller}. It means that this class holds all necessary
  * information for a {@link Controller} flow, including the current request and response, the output
@@ -36,18 +40,49 @@ public final class ControllerContext {
 
 	// static stuff
 
-	private static final ThreadLocal<ControllerContext> threadContexts = new ThreadLocal<ControllerContext>();
+	private static final ThreadLocal<ControllerContext> recycledContexts = new ThreadLocal<ControllerContext>();
 
 	protected static ControllerContext getContext() {
-		return threadContexts.get();
+		return ContextCarrier.current();
 	}
 
 	protected static void setContext(HttpServletRequest request, ControllerDescriptor controllerDesc) {
-		threadContexts.set(new ControllerContext(request, controllerDesc));
+		ContextCarrier.bind(new ControllerContext(request, controllerDesc));
 	}
 
 	protected static void clearContext() {
-		threadContexts.remove();
+		ContextCarrier.restore(null);
+	}
+
+	/**
+	 * Sets the context for the given request, reusing the context recycled by the current thread,
+	 * if there's one.
+	 */
+	protected static void setRecycledContext(HttpServletRequest request, ControllerDescriptor controllerDesc) {
+		ControllerContext context = recycledContexts.get();
+		if (context != null) {
+			recycledContexts.set(null);
+			context.request = request;
+			context.controllerDesc = controllerDesc;
+		} else {
+			context = new ControllerContext(request, controllerDesc);
+			context.recyclable = true;
+		}
+		ContextCarrier.bind(context);
+	}
+
+	/**
+	 * Clears the current context, recycling it to be reused by the next request executed by the
+	 * current thread. Contexts that were suspended aren't recycled, since they can still be in use
+	 * by another thread.
+	 */
+	protected static void recycleContext() {
+		ControllerContext context = ContextCarrier.current();
+		ContextCarrier.restore(null);
+		if (context != null && context.recyclable && !context.detached) {
+			context.recycle();
+			recycledContexts.set(context);
+		}
 	}
 
 	// internal
@@ -59,6 +94,12 @@ public final class ControllerContext {
 	private ControllerDescriptor controllerDesc;
 	private Locale locale;
 	private ControllerDescriptor forward = null;
+	private Continuation continuation = null;
+	private boolean recyclable = false;
+	private boolean detached = false;
+	private TemplateResponse templateResponse;
+	private JSONResponse jsonResponse;
+	private final RequestScope requestScope = new RequestScope();
 
 	private ControllerContext(HttpServletRequest request, ControllerDescriptor controllerDesc) {
 		this.request = request;
@@ -78,7 +119,7 @@ public final class ControllerContext {
 	 * Sets the controller response for this context.
 	 */
 	protected void setControllerResponse(ControllerResponse response) {
-		if (!this.isAnswered() && !this.forwarded()) {
+		if (!this.isAnswered() && !this.forwarded() && !this.suspended()) {
 			this.controllerResp = response;
 		} else {
 			throw new IllegalStateException("Response already defined");
@@ -92,7 +133,7 @@ public final class ControllerContext {
 	 *            the {@link ControllerDescriptor} which this controller will be forwarded
 	 */
 	protected void forward(ControllerDescriptor forwardDescriptor) {
-		if (!this.isAnswered() && !this.forwarded()) {
+		if (!this.isAnswered() && !this.forwarded() && !this.suspended()) {
 			this.forward = forwardDescriptor;
 		} else {
 			throw new IllegalStateException("Response already defined");
@@ -110,6 +151,85 @@ public final class ControllerContext {
 		return this.controllerDesc;
 	}
 
+	/**
+	 * Creates a {@link TemplateResponse} for this context. Recyclable contexts reuse their response.
+	 */
+	protected TemplateResponse templateResponse(String template, int code) {
+		if (!this.recyclable) {
+			return new TemplateResponse(template, code, this);
+		} else if (this.templateResponse == null) {
+			this.templateResponse = new TemplateResponse(template, code, this);
+		} else {
+			this.templateResponse.reset(template, code, this);
+		}
+		return this.templateResponse;
+	}
+
+	/**
+	 * Creates a {@link JSONResponse} for this context. Recyclable contexts reuse their response.
+	 */
+	protected JSONResponse jsonResponse(int code) {
+		if (!this.recyclable) {
+			return new JSONResponse(code, this);
+		} else if (this.jsonResponse == null) {
+			this.jsonResponse = new JSONResponse(code, this);
+		} else {
+			this.jsonResponse.reset(code, this);
+		}
+		return this.jsonResponse;
+	}
+
+	/**
+	 * Clears this context request's state, keeping its collections and responses to be reused.
+	 */
+	private void recycle() {
+		this.controllerResp = null;
+		this.request = null;
+		this.controllerDesc = null;
+		this.locale = null;
+		this.forward = null;
+		if (this.cookies != null) {
+			this.cookies.clear();
+		}
+		if (this.headers != null) {
+			this.headers.clear();
+		}
+		if (this.output != null) {
+			this.output.clear();
+		}
+		this.requestScope.clear();
+	}
+
+	/**
+	 * Suspends this context. The request will be answered when the returned {@link Continuation}
+	 * is resumed.
+	 * 
+	 * @return the {@link Continuation} for this context
+	 */
+	protected Continuation suspend() {
+		if (!this.isAnswered() && !this.forwarded() && !this.suspended()) {
+			this.continuation = new Continuation(this);
+			this.detached = true;
+			return this.continuation;
+		} else {
+			throw new IllegalStateException("Response already defined");
+		}
+	}
+
+	/**
+	 * Gets the {@link Continuation} for this context, if it's suspended
+	 */
+	protected Continuation continuation() {
+		return this.continuation;
+	}
+
+	/**
+	 * Marks this context as resumed
+	 */
+	protected void resumed() {
+		this.continuation = null;
+	}
+
 	/**
 	 * @param locale
 	 *            the locale to be used to render response.
@@ -229,7 +349,7 @@ public final class ControllerContext {
 	 */
 	public Map<String, String> getHeaders() {
 		if (this.headers == null) {
-			this.headers = new HashMap<String, String>();
+			this.headers = new CompactMap<String, String>();
 		}
 		return this.headers;
 	}
@@ -249,7 +369,7 @@ public final class ControllerContext {
 	 */
 	public Map<String, Object> getOutput() {
 		if (this.output == null) {
-			this.output = new HashMap<String, Object>();
+			this.output = new CompactMap<String, Object>();
 		}
 		return this.output;
 	}
@@ -268,6 +388,13 @@ public final class ControllerContext {
 		return this.controllerResp;
 	}
 
+	/**
+	 * @return the {@link RequestScope} holding this request's instances
+	 */
+	public RequestScope getRequestScope() {
+		return this.requestScope;
+	}
+
 	/**
 	 * @return the locale to be used to render response.
 	 */
@@ -284,4 +411,13 @@ public final class ControllerContext {
 		return forward != null;
 	}
 
+	/**
+	 * Checks if this controller was suspended, waiting to be resumed
+	 * 
+	 * @return <code>true</code> if it was, <code>false</code> if not
+	 */
+	public boolean suspended() {
+		return this.continuation != null;
+	}
+
 }
@@ -18,30 +18,33 @@ package br.octahedron.cotopaxi.controller;
 
 import static br.octahedron.cotopaxi.CotopaxiProperty.ERROR_PROPERTY;
 import static br.octahedron.cotopaxi.CotopaxiProperty.NOT_FOUND_TEMPLATE;
-import static br.octahedron.cotopaxi.CotopaxiProperty.property;
+import static br.octahedron.cotopaxi.CotopaxiProperty.snapshot;
 import static br.octahedron.cotopaxi.controller.ControllerContext.clearContext;
 import static br.octahedron.cotopaxi.controller.ControllerContext.getContext;
+import static br.octahedron.cotopaxi.controller.ControllerContext.recycleContext;
 import static br.octahedron.cotopaxi.controller.ControllerContext.setContext;
-import static br.octahedron.cotopaxi.inject.Injector.getInstance;
+import static br.octahedron.cotopaxi.controller.ControllerContext.setRecycledContext;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.servlet.http.HttpServletRequest;
 
 import br.octahedron.cotopaxi.interceptor.InterceptorManager;
 import br.octahedron.cotopaxi.route.NotFoundExeption;
 import br.octahedron.cotopaxi.view.response.TemplateResponse;
+import br.octahedron.util.CompactMap;
 import br.octahedron.util.Log;
-import br.octahedron.util.ReflectionUtil;
 
 /**
  * This class is responsible by the controllers' execution and by gets the
  * {@link ControllerResponse} for each request. It also is responsible by handles all the
  * ControllerContext lifecycle.
  * 
+ * Each {@link ControllerDescriptor} is compiled to a {@link ControllerHandler}, that holds the
+ * controller instance, method and interceptors. Handlers for the configured routes are prepared
+ * at startup, and others, such as forwards, are compiled at the first use.
  * 
  * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
  */
@@ -49,13 +52,37 @@ public class ControllerExecutor {
 
 	private static final Log log = new Log(ControllerExecutor.class);
 
-	private Map<Integer, Method> methodsCache = new HashMap<Integer, Method>();
+	private final ConcurrentHashMap<ControllerDescriptor, ControllerHandler> handlers = new ConcurrentHashMap<ControllerDescriptor, ControllerHandler>();
 	private InterceptorManager interceptor;
+	private boolean recycleContexts = false;
 
 	public ControllerExecutor(InterceptorManager interceptor) {
 		this.interceptor = interceptor;
 	}
 
+	/**
+	 * Sets if the {@link ControllerContext}s, and their responses, should be recycled and reused
+	 * by the next request executed by the same thread. Responses must not be used after the
+	 * context is released when it's enabled.
+	 */
+	public void setRecycleContexts(boolean recycleContexts) {
+		this.recycleContexts = recycleContexts;
+	}
+
+	/**
+	 * Compiles the handlers for the given {@link ControllerDescriptor}s. Controllers that can't be
+	 * compiled are logged, and will be compiled again when requested.
+	 */
+	public void prepare(Collection<ControllerDescriptor> controllerDescs) {
+		for (ControllerDescriptor controllerDesc : controllerDescs) {
+			try {
+				this.getHandler(controllerDesc);
+			} catch (Exception ex) {
+				log.warning("Unable to prepare controller %s: %s", controllerDesc, ex.getMessage());
+			}
+		}
+	}
+
 	/**
 	 * Handles a controller {@link NotFoundExeption}. It's responsible to generate a response once a
 	 * controller has not be found.
@@ -66,9 +93,9 @@ public class ControllerExecutor {
 	public ControllerResponse execute(HttpServletRequest request, NotFoundExeption nfex) {
 		log.warning("Cannot found a controller for url %s - %s.", request.getRequestURI(), request.getMethod());
 		setContext(request, new ControllerDescriptor(nfex.getUrl(), request.getMethod(), "error", "NotFound"));
-		Map<String, Object> output = new HashMap<String, Object>();
-		output.put(property(ERROR_PROPERTY), nfex);
-		return new TemplateResponse(property(NOT_FOUND_TEMPLATE), 404, output, request.getLocale());
+		Map<String, Object> output = new CompactMap<String, Object>();
+		output.put(snapshot().get(ERROR_PROPERTY), nfex);
+		return new TemplateResponse(snapshot().get(NOT_FOUND_TEMPLATE), 404, output, request.getLocale());
 	}
 
 	/**
@@ -82,38 +109,36 @@ public class ControllerExecutor {
 	 * @throws Throwable 
 	 */
 	public ControllerResponse execute(ControllerDescriptor controllerDesc, HttpServletRequest request) throws Throwable {
-		// first of all, clear previous context
-		clearContext();
-		setContext(request, controllerDesc);
+		if (this.recycleContexts) {
+			setRecycledContext(request, controllerDesc);
+		} else {
+			setContext(request, controllerDesc);
+		}
 		return process(controllerDesc, request);
 	}
 
+	/**
+	 * Releases the context of the request executed by the current thread. It should be called once
+	 * the request's response is dispatched.
+	 */
+	public void release() {
+		if (this.recycleContexts) {
+			recycleContext();
+		} else {
+			clearContext();
+		}
+	}
+
 	private ControllerResponse process(ControllerDescriptor controllerDesc, HttpServletRequest request) throws Throwable {
+		ControllerContext context = getContext();
+		// controller isn't answered
+		if (context.isAnswered()) {
+			return context.getControllerResponse();
+		}
+		ControllerHandler handler;
 		try {
-			ControllerContext context = getContext();
-			// controller isn't answered
-			if (context.isAnswered()) {
-				return context.getControllerResponse();
-			} else {
-				// load controller and fix context
-				Controller controller = this.loadController(controllerDesc);
-				Method method = this.getMethod(controllerDesc, controller);
-				this.interceptor.execute(method, context);
-				// execute controller
-				if (!context.isAnswered() && !context.forwarded()) {
-					log.debug("Executing controller %s - %s", controller.getClass().getName(), method.getName());
-					ReflectionUtil.invoke(controller, method);
-				} else {
-					log.debug("Controller %s - %s already answered, controller NOT executed!", controller.getClass().getName(), method.getName());
-				}
-				if (context.forwarded()) {
-					return this.process(context.forward(), request);
-				} else {
-					return context.getControllerResponse();
-				}
-			}
-		} catch (InvocationTargetException ex) {
-			throw ex.getCause();
+			handler = this.getHandler(controllerDesc);
+			handler.intercept(context);
 		} catch (Exception ex) {
 			/*
 			 * Here means an access error to controller. It can be cause if controller method
@@ -125,30 +150,49 @@ public class ControllerExecutor {
 			log.error(ex, "Unable to load controller %s", controllerDesc);
 			return this.execute(request, new NotFoundExeption(request.getRequestURI(), request.getMethod()));
 		}
+		// execute controller - its exceptions are thrown as is by the invoker
+		if (!context.isAnswered() && !context.forwarded() && !context.suspended()) {
+			log.debug("Executing controller %s - %s", handler.getController().getClass().getName(), handler.getMethod().getName());
+			handler.invoke();
+		} else {
+			log.debug("Controller %s - %s already answered, controller NOT executed!", handler.getController().getClass().getName(), handler.getMethod()
+					.getName());
+		}
+		return this.proceed(context);
 	}
 
 	/**
-	 * Gets this controller method.
+	 * Proceeds with the request after the controller execution: a suspended request returns its
+	 * {@link Continuation}, and a forwarded one is processed by the forward controller.
 	 */
-	private Method getMethod(ControllerDescriptor controllerDesc, Controller controller) throws SecurityException, NoSuchMethodException {
-		int hash = controllerDesc.hashCode();
-		if (this.methodsCache.containsKey(hash)) {
-			log.debug("Method founded at cache table. Hash: %d", hash);
-			return this.methodsCache.get(hash);
+	protected ControllerResponse proceed(ControllerContext context) throws Throwable {
+		if (context.suspended()) {
+			Continuation continuation = context.continuation();
+			continuation.prepare(this);
+			return continuation;
+		} else if (context.forwarded()) {
+			return this.process(context.forward(), context.getRequest());
 		} else {
-			String method = controllerDesc.getFullControllerName();
-			Method result = ReflectionUtil.getMethod(controller.getClass(), method);
-			this.methodsCache.put(hash, result);
-			return result;
+			return context.getControllerResponse();
 		}
-
 	}
 
 	/**
-	 * Loads the controller instance
+	 * Gets the {@link ControllerHandler} for the given {@link ControllerDescriptor}, compiling it if
+	 * necessary.
 	 */
-	private Controller loadController(ControllerDescriptor controllerDesc) throws InstantiationException, ClassNotFoundException {
-		return (Controller) getInstance(ReflectionUtil.getClass(controllerDesc.getControllerClass()));
+	private ControllerHandler getHandler(ControllerDescriptor controllerDesc) throws ClassNotFoundException, InstantiationException,
+			NoSuchMethodException {
+		ControllerHandler handler = this.handlers.get(controllerDesc);
+		if (handler == null) {
+			log.debug("Compiling controller %s", controllerDesc);
+			handler = new ControllerHandler(controllerDesc, this.interceptor);
+			ControllerHandler previous = this.handlers.putIfAbsent(controllerDesc, handler);
+			if (previous != null) {
+				handler = previous;
+			}
+		}
+		return handler;
 	}
 
 	/**
@@ -157,6 +201,6 @@ public class ControllerExecutor {
 	 * Calling this method can make application stop works properly.
 	 */
 	public void forceReset() {
-		this.methodsCache.clear();
+		this.handlers.clear();
 	}
 }
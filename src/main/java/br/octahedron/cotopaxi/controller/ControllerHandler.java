@@ -0,0 +1,95 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.controller;
+
+import static br.octahedron.cotopaxi.inject.Injector.getInstance;
+
+import java.lang.reflect.Method;
+
+import br.octahedron.cotopaxi.interceptor.InterceptorChain;
+import br.octahedron.cotopaxi.interceptor.InterceptorManager;
+import br.octahedron.util.ReflectionUtil;
+
+/**
+ * A compiled {@link ControllerDescriptor}. It holds everything needed to dispatch a request to
+ * the controller: the controller instance, its method, the {@link ControllerInvoker} bound to the
+ * method and the interceptors to be executed before it. It's built once per
+ * {@link ControllerDescriptor}, so classes, instances, methods and annotations aren't looked up at
+ * each request.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+final class ControllerHandler {
+
+	private final ControllerDescriptor controllerDesc;
+	private final Controller controller;
+	private final Method method;
+	private final ControllerInvoker invoker;
+	private final InterceptorChain interceptors;
+
+	/**
+	 * Compiles the given {@link ControllerDescriptor}
+	 * 
+	 * @param controllerDesc
+	 *            The {@link ControllerDescriptor} to be compiled
+	 * @param interceptor
+	 *            The {@link InterceptorManager} to build the interceptors chain
+	 */
+	protected ControllerHandler(ControllerDescriptor controllerDesc, InterceptorManager interceptor) throws ClassNotFoundException,
+			InstantiationException, NoSuchMethodException {
+		this.controllerDesc = controllerDesc;
+		this.controller = (Controller) getInstance(ReflectionUtil.getClass(controllerDesc.getControllerClass()));
+		this.method = ReflectionUtil.getMethod(this.controller.getClass(), controllerDesc.getFullControllerName());
+		this.invoker = new ReflectionInvoker(this.method);
+		this.interceptors = interceptor.chain(this.method);
+	}
+
+	/**
+	 * Executes the interceptors chain
+	 */
+	protected void intercept(ControllerContext context) {
+		this.interceptors.execute(context);
+	}
+
+	/**
+	 * Invokes the controller method. Exceptions thrown by the controller are thrown as is.
+	 */
+	protected void invoke() throws Throwable {
+		this.invoker.invoke(this.controller);
+	}
+
+	/**
+	 * @return the compiled {@link ControllerDescriptor}
+	 */
+	protected ControllerDescriptor getControllerDescriptor() {
+		return this.controllerDesc;
+	}
+
+	/**
+	 * @return the controller instance
+	 */
+	protected Controller getController() {
+		return this.controller;
+	}
+
+	/**
+	 * @return the controller method
+	 */
+	protected Method getMethod() {
+		return this.method;
+	}
+}
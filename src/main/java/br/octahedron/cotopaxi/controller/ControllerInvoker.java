@@ -0,0 +1,36 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.controller;
+
+/**
+ * Invokes a {@link Controller} action. An invoker is bound to a single action when the
+ * {@link ControllerDescriptor} is compiled, so invoking it doesn't look up anything.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public interface ControllerInvoker {
+
+	/**
+	 * Invokes the action this invoker is bound to.
+	 * 
+	 * @param controller
+	 *            The controller instance
+	 * @throws Throwable
+	 *             Any exception thrown by the action, as is, without any wrapping.
+	 */
+	public abstract void invoke(Controller controller) throws Throwable;
+}
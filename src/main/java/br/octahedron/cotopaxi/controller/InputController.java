@@ -144,7 +144,8 @@ public abstract class InputController {
 		HttpServletRequest request = this.request();
 		String result = request.getParameter(name);
 		if (result == null || result.equals("")) {
-			result = (String) request.getAttribute(name);
+			Object attribute = request.getAttribute(name);
+			result = (attribute != null) ? attribute.toString() : null;
 		}
 		return (result != null && shouldTrim) ? result.trim() : result;
 	}
@@ -168,6 +169,23 @@ public abstract class InputController {
 		return converter.convert(this.in(name, true));
 	}
 
+	/**
+	 * Gets an URL variable value, already converted to the type declared at the mapping URL. E.g.:
+	 * for the mapping URL <i>/user/{id:int}</i>, in("id", Integer.class) returns the {@link Integer}
+	 * id, parsed while routing the request.
+	 * 
+	 * @param name
+	 *            The URL variable's name
+	 * @param type
+	 *            The URL variable's type
+	 * @return The variable's value if exists, or <code>null</code> if there's no URL variable
+	 *         with the given name and type.
+	 */
+	protected final <T> T in(String name, Class<T> type) {
+		Object value = this.request().getAttribute(name);
+		return type.isInstance(value) ? type.cast(value) : null;
+	}
+
 	// protected final <T> T in(Class<T> wrapperClass) {
 	// return null;
 	// }
@@ -0,0 +1,61 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.controller;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * The default {@link ControllerInvoker}. It invokes the action {@link Method} through reflection.
+ * 
+ * The method is made accessible once, so access checks are skipped at invocation, and the same
+ * empty arguments array is used for all invocations. Exceptions thrown by the action are unwrapped
+ * from the {@link InvocationTargetException}.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+final class ReflectionInvoker implements ControllerInvoker {
+
+	private static final Object[] NO_ARGS = new Object[0];
+
+	private final Method method;
+
+	/**
+	 * @param method
+	 *            The action method, with no parameters
+	 */
+	protected ReflectionInvoker(Method method) {
+		this.method = method;
+		this.method.setAccessible(true);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * br.octahedron.cotopaxi.controller.ControllerInvoker#invoke(br.octahedron.cotopaxi.controller
+	 * .Controller)
+	 */
+	@Override
+	public void invoke(Controller controller) throws Throwable {
+		try {
+			this.method.invoke(controller, NO_ARGS);
+		} catch (InvocationTargetException ex) {
+			throw ex.getCause();
+		}
+	}
+}
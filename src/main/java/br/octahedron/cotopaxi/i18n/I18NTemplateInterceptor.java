@@ -19,7 +19,7 @@ package br.octahedron.cotopaxi.i18n;
 import static br.octahedron.cotopaxi.CotopaxiProperty.I18N_DATE_FORMAT_PROPERTY;
 import static br.octahedron.cotopaxi.CotopaxiProperty.I18N_NUMBER_FORMAT_PROPERTY;
 import static br.octahedron.cotopaxi.CotopaxiProperty.I18N_PROPERTY;
-import static br.octahedron.cotopaxi.CotopaxiProperty.property;
+import static br.octahedron.cotopaxi.CotopaxiProperty.snapshot;
 import static br.octahedron.util.DateUtil.defaultDateFormat;
 
 import java.text.DateFormat;
@@ -81,9 +81,9 @@ public class I18NTemplateInterceptor extends TemplateInterceptor {
 			lcMap = this.localeManager.getLocaleMap(desc, this.locales());
 		}
 
-		response.addOutput(property(I18N_PROPERTY), lcMap);
-		response.addOutput(property(I18N_DATE_FORMAT_PROPERTY), this.dateFormat(lcMap.getLocale()));
-		response.addOutput(property(I18N_NUMBER_FORMAT_PROPERTY), this.numberFormat(lcMap.getLocale()));
+		response.addOutput(snapshot().get(I18N_PROPERTY), lcMap);
+		response.addOutput(snapshot().get(I18N_DATE_FORMAT_PROPERTY), this.dateFormat(lcMap.getLocale()));
+		response.addOutput(snapshot().get(I18N_NUMBER_FORMAT_PROPERTY), this.numberFormat(lcMap.getLocale()));
 	}
 
 	/**
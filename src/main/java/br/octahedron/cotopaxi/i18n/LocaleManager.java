@@ -18,9 +18,9 @@ package br.octahedron.cotopaxi.i18n;
 
 import static br.octahedron.cotopaxi.CotopaxiProperty.I18N_BASE_FILE;
 import static br.octahedron.cotopaxi.CotopaxiProperty.I18N_FOLDER;
-import static br.octahedron.cotopaxi.CotopaxiProperty.I18N_SUPPORTED_LOCALES;
 import static br.octahedron.cotopaxi.CotopaxiProperty.charset;
 import static br.octahedron.cotopaxi.CotopaxiProperty.property;
+import static br.octahedron.cotopaxi.CotopaxiProperty.snapshot;
 import static java.util.Arrays.asList;
 
 import java.io.File;
@@ -30,7 +30,6 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedHashSet;
 import java.util.Locale;
 import java.util.Map;
 import java.util.PropertyResourceBundle;
@@ -96,35 +95,9 @@ public class LocaleManager {
 	private static final String BASE_RESOURCE = property(I18N_BASE_FILE);
 	private static final String BASE_FOLDER = property(I18N_FOLDER);
 
-	private static Collection<Locale> supportedLocales = new LinkedHashSet<Locale>();
 	private Map<String, ResourceBundle> cache = new HashMap<String, ResourceBundle>();
 	private ClassLoader loader = this.getClass().getClassLoader();
 
-	static {
-		/*
-		 * Loads the supported locales from configuration file.
-		 */
-		String[] locales = property(I18N_SUPPORTED_LOCALES).split(",");
-		for (String l : locales) {
-			Locale lc = null;
-			l = l.trim();
-			int ll = l.length();
-			if (ll == 2) {
-				lc = new Locale(l);
-			} else if (ll == 5 && l.charAt(2) == '_') {
-				String[] ls = l.split("_");
-				lc = new Locale(ls[0], ls[1]);
-			}
-
-			if (lc != null) {
-				logger.debug("Adding locale %s to supported locales list", lc.toString());
-				supportedLocales.add(lc);
-			} else {
-				logger.warning("%s isn't a valid locale, please check configuration file.", l);
-			}
-		}
-	}
-
 	/**
 	 * Gets a {@link LocaleMap} for the given {@link Controller} and locale. If there's no i18n
 	 * files for the given controller and/or locale, it will returns an empty {@link LocaleMap}.
@@ -231,6 +204,7 @@ public class LocaleManager {
 	 * @return The prefered locale supported by both request and application to be used.
 	 */
 	protected Locale findLocale(Collection<Locale> locales) {
+		Collection<Locale> supportedLocales = snapshot().supportedLocales();
 		if (supportedLocales.size() != 1) {
 			for (Locale lc : locales) {
 				if (supportedLocales.contains(lc)) {
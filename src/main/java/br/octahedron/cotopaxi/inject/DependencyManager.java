@@ -16,22 +16,86 @@
  */
 package br.octahedron.cotopaxi.inject;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import br.octahedron.util.Log;
 
 /**
  * The class responsible by manage dependencies for classes.
  * 
+ * It's safe to be used by concurrent threads: each singleton is created exactly once, and threads
+ * requesting a singleton being created wait only for that singleton. Singletons depending on each
+ * other, even if created by different threads, fail with an {@link InstantiationException}
+ * instead of waiting forever.
+ * 
+ * Dependencies and singletons are kept by a {@link Registry}. A new {@link Registry} can be staged
+ * for some threads, that register and create dependencies on it while the published one keeps
+ * being used by the others, and then published at once.
+ * 
  * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
  */
 public class DependencyManager {
 
 	private static final Log log = new Log(DependencyManager.class);
 
-	protected static final Map<Class<?>, Object> instances = new HashMap<Class<?>, Object>();
-	protected static final Map<Class<?>, Class<?>> dependencies = new HashMap<Class<?>, Class<?>>();
+	private static volatile Registry registry = new Registry();
+	private static final ThreadLocal<Registry> stagedRegistry = new ThreadLocal<Registry>();
+	private static final AtomicInteger stagingThreads = new AtomicInteger();
+	private static final ConcurrentHashMap<Thread, PendingInstance> waiting = new ConcurrentHashMap<Thread, PendingInstance>();
+
+	/**
+	 * Gets the {@link Registry} staged for the current thread, if any, or the published one.
+	 */
+	private static Registry registry() {
+		if (stagingThreads.get() > 0) {
+			Registry staged = stagedRegistry.get();
+			if (staged != null) {
+				return staged;
+			}
+		}
+		return registry;
+	}
+
+	/**
+	 * Stages the given {@link Registry} for the current thread, that uses it instead of the
+	 * published one.
+	 * 
+	 * @param staged
+	 *            the {@link Registry} to be staged, or <code>null</code> to use the published one
+	 *            again
+	 */
+	public static void stage(Registry staged) {
+		Registry previous = stagedRegistry.get();
+		if (staged != null) {
+			stagedRegistry.set(staged);
+			if (previous == null) {
+				stagingThreads.incrementAndGet();
+			}
+		} else {
+			stagedRegistry.remove();
+			if (previous != null) {
+				stagingThreads.decrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Gets the {@link Registry} staged for the current thread.
+	 * 
+	 * @return the staged {@link Registry}, or <code>null</code> if there's none
+	 */
+	public static Registry staged() {
+		return stagedRegistry.get();
+	}
+
+	/**
+	 * Publishes the given {@link Registry}, replacing the current one for all threads.
+	 */
+	public static void publish(Registry published) {
+		registry = published;
+	}
 
 	/**
 	 * Registers an implementation class for a given dependency.
@@ -43,7 +107,7 @@ public class DependencyManager {
 	 */
 	public static <T> void registerDependency(Class<T> dependencyIF, Class<? extends T> dependencyImpl) {
 		log.debug("Registring dependency: %s as implementation for %s", dependencyImpl.getName(), dependencyIF.getName());
-		dependencies.put(dependencyIF, dependencyImpl);
+		registry().dependencies.put(dependencyIF, dependencyImpl);
 	}
 
 	/**
@@ -58,14 +122,14 @@ public class DependencyManager {
 	public static void registerImplementation(Class<?> dependencyIF, Object object) {
 		if (dependencyIF.isAssignableFrom(object.getClass())) {
 			log.debug("Registring dependency: %s as implementation for %s", object, dependencyIF.getName());
-			instances.put(dependencyIF, object);
+			registry().instances.put(dependencyIF, object);
 		} else {
 			throw new IllegalArgumentException("The given Class should be a SuperType or SuperInterface of the given object!");
 		}
 	}
 
 	public static void removeImplementation(Class<?> klass) {
-		instances.remove(klass);
+		registry().instances.remove(klass);
 	}
 
 	/**
@@ -77,21 +141,79 @@ public class DependencyManager {
 	 */
 	@SuppressWarnings("unchecked")
 	protected static <T> Class<? extends T> resolveDependency(Class<T> dependencyIF) {
-		return (Class<? extends T>) ((dependencies.containsKey(dependencyIF)) ? dependencies.get(dependencyIF) : dependencyIF);
+		Class<?> dependencyImpl = registry().dependencies.get(dependencyIF);
+		return (Class<? extends T>) ((dependencyImpl != null) ? dependencyImpl : dependencyIF);
 	}
 
 	protected static boolean containsImplementation(Class<?> klass) {
-		return instances.containsKey(klass);
+		return registry().instances.containsKey(klass);
 	}
 
 	@SuppressWarnings("unchecked")
 	protected static <T> T getImplementation(Class<T> klass) {
-		return (T) instances.get(klass);
+		return (T) registry().instances.get(klass);
+	}
+
+	/**
+	 * Gets the singleton instance for the given class, creating it if necessary. If another thread
+	 * is already creating it, waits for that thread.
+	 * 
+	 * @throws InstantiationException
+	 *             if the instance can't be created, or if it depends on itself. The failure
+	 *             creating the instance is its cause.
+	 */
+	@SuppressWarnings("unchecked")
+	protected static <T> T getSingleton(Class<T> klass) throws InstantiationException {
+		Registry current = registry();
+		ConcurrentHashMap<Class<?>, Object> instances = current.instances;
+		Object instance = instances.get(klass);
+		if (instance != null) {
+			return (T) instance;
+		}
+		PendingInstance pending = new PendingInstance();
+		ConcurrentHashMap<Class<?>, PendingInstance> pendings = current.pendings;
+		PendingInstance creating = pendings.putIfAbsent(klass, pending);
+		if (creating != null) {
+			return (T) creating.await(klass);
+		}
+		try {
+			instance = instances.get(klass);
+			if (instance == null) {
+				instance = Injector.createInstance(klass);
+				Object previous = instances.putIfAbsent(klass, instance);
+				if (previous != null) {
+					// registered by hand meanwhile
+					instance = previous;
+				}
+			}
+			pending.complete(instance, null);
+			return (T) instance;
+		} catch (InstantiationException ex) {
+			pending.complete(null, ex);
+			throw ex;
+		} catch (Exception ex) {
+			InstantiationException failure = instantiationFailure(klass, ex);
+			pending.complete(null, failure);
+			throw failure;
+		} catch (Error err) {
+			pending.complete(null, err);
+			throw err;
+		} finally {
+			pendings.remove(klass, pending);
+		}
 	}
 	
+	/**
+	 * Creates an {@link InstantiationException} for the given class, caused by the given failure.
+	 */
+	static InstantiationException instantiationFailure(Class<?> klass, Throwable cause) {
+		InstantiationException ex = new InstantiationException("Unable to load class " + klass);
+		ex.initCause(cause);
+		return ex;
+	}
+
 	protected void reset() {
-		instances.clear();
-		dependencies.clear();
+		forceReset();
 	}
 
 	/**
@@ -108,7 +230,61 @@ public class DependencyManager {
 	 * Calling this method can make application stop works properly.
 	 */
 	public static void forceReset() {
-		instances.clear();
-		dependencies.clear();
+		Registry current = registry();
+		current.instances.clear();
+		current.dependencies.clear();
+		InjectionPlan.forceReset();
+	}
+
+	/**
+	 * The registered dependencies and the singleton instances.
+	 */
+	public static final class Registry {
+		private final ConcurrentHashMap<Class<?>, Object> instances = new ConcurrentHashMap<Class<?>, Object>();
+		private final ConcurrentHashMap<Class<?>, Class<?>> dependencies = new ConcurrentHashMap<Class<?>, Class<?>>();
+		private final ConcurrentHashMap<Class<?>, PendingInstance> pendings = new ConcurrentHashMap<Class<?>, PendingInstance>();
+	}
+
+	/**
+	 * A singleton being created by a thread.
+	 * 
+	 * Threads waiting for a singleton are tracked, so a thread about to wait can follow the chain
+	 * of threads waiting for each other. If the chain comes back to it, waiting would deadlock.
+	 */
+	private static final class PendingInstance {
+		private final Thread owner = Thread.currentThread();
+		private final CountDownLatch done = new CountDownLatch(1);
+		private volatile Object instance;
+		private volatile Throwable failure;
+
+		private void complete(Object instance, Throwable failure) {
+			this.instance = instance;
+			this.failure = failure;
+			this.done.countDown();
+		}
+
+		private Object await(Class<?> klass) throws InstantiationException {
+			Thread current = Thread.currentThread();
+			waiting.put(current, this);
+			try {
+				// the chain is bounded, since other threads in a cycle are about to fail
+				int threads = waiting.size();
+				for (PendingInstance next = this; next != null && threads >= 0; next = waiting.get(next.owner), threads--) {
+					if (next.owner == current) {
+						throw new InstantiationException("Circular dependency loading class " + klass);
+					}
+				}
+				this.done.await();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw instantiationFailure(klass, ex);
+			} finally {
+				waiting.remove(current);
+			}
+			if (this.failure != null) {
+				throw instantiationFailure(klass, this.failure);
+			}
+			return this.instance;
+		}
 	}
 }
@@ -0,0 +1,56 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.inject;
+
+import br.octahedron.util.Log;
+
+/**
+ * Injects the dependencies of a class without reflection. Its implementations are generated at
+ * build time by the {@link br.octahedron.cotopaxi.processor.CotopaxiProcessor}, named after the
+ * injected class with the {@link #SUFFIX} suffix, and are used by the {@link Injector} instead of
+ * scanning the class fields.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public abstract class GeneratedInjector<T> {
+
+	/**
+	 * The suffix of the generated injectors' names
+	 */
+	public static final String SUFFIX = "$$Injector";
+
+	private static final Log log = new Log(GeneratedInjector.class);
+
+	/**
+	 * Injects the dependencies into the given instance.
+	 */
+	public abstract void inject(T instance);
+
+	/**
+	 * Gets a dependency to be injected.
+	 * 
+	 * @return the dependency, or <code>null</code> if it can't be loaded
+	 */
+	protected static <D> D dependency(Class<D> klass, Scope scope) {
+		try {
+			return Injector.getInstance(klass, scope);
+		} catch (InstantiationException ex) {
+			log.error(ex, "Unable to performe injection: %s", ex.getLocalizedMessage());
+			return null;
+		}
+	}
+}
@@ -85,4 +85,10 @@ public @interface Inject {
 	 * To use a new and exclusive instance, set it to <code>true</code>
 	 */
 	boolean newInstance() default false;
+
+	/**
+	 * Defines the {@link Scope} of the injected instance. By default its {@link Scope#SINGLETON}.
+	 * Setting newInstance to <code>true</code> is the same as using {@link Scope#PROTOTYPE}.
+	 */
+	Scope scope() default Scope.SINGLETON;
 }
@@ -0,0 +1,154 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.inject;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import br.octahedron.util.Log;
+import br.octahedron.util.ReflectionUtil;
+
+/**
+ * The injection points of a class: its {@link Inject} annotated fields, and the "set" methods used
+ * to inject them. Plans are computed once per class, so injecting an instance doesn't walk the
+ * class hierarchy, nor looks up methods, again.
+ * 
+ * If there's a {@link GeneratedInjector} for the class, the plan uses it instead of reflection.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+final class InjectionPlan {
+
+	private static final Log log = new Log(InjectionPlan.class);
+	private static final ConcurrentHashMap<Class<?>, InjectionPlan> plans = new ConcurrentHashMap<Class<?>, InjectionPlan>();
+
+	/**
+	 * Gets the plan for the given class, computing it if necessary.
+	 */
+	static InjectionPlan of(Class<?> klass) {
+		InjectionPlan plan = plans.get(klass);
+		if (plan == null) {
+			plan = new InjectionPlan(klass);
+			InjectionPlan previous = plans.putIfAbsent(klass, plan);
+			if (previous != null) {
+				plan = previous;
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * Discards all computed plans.
+	 */
+	static void forceReset() {
+		plans.clear();
+	}
+
+	private final InjectionPoint[] points;
+	private final GeneratedInjector<Object> generated;
+
+	private InjectionPlan(Class<?> klass) {
+		this.generated = generatedInjector(klass);
+		if (this.generated != null) {
+			log.debug("Using generated injector for %s", klass.getName());
+			this.points = new InjectionPoint[0];
+			return;
+		}
+		Collection<Field> fields = ReflectionUtil.getAnnotatedFields(klass, Inject.class);
+		List<InjectionPoint> points = new ArrayList<InjectionPoint>(fields.size());
+		for (Field f : fields) {
+			Class<?> type = f.getType();
+			try {
+				Method set = ReflectionUtil.getSetMethod(type.getSimpleName(), klass, type);
+				set.setAccessible(true);
+				Inject inject = f.getAnnotation(Inject.class);
+				points.add(new InjectionPoint(type, inject.newInstance() ? Scope.PROTOTYPE : inject.scope(), set));
+			} catch (Exception ex) {
+				log.error(ex, "Unable to performe injection of %s at %s: %s", type.getSimpleName(), klass.getSimpleName(), ex.getLocalizedMessage());
+			}
+		}
+		this.points = points.toArray(new InjectionPoint[points.size()]);
+	}
+
+	/**
+	 * Injects the dependencies into the given instance.
+	 */
+	void inject(Object instance) {
+		if (this.generated != null) {
+			this.generated.inject(instance);
+			return;
+		}
+		for (InjectionPoint point : this.points) {
+			try {
+				Object obj = Injector.getInstance(point.type, point.scope);
+				log.debug("Injecting object %s into object %s", point.type, instance.getClass());
+				point.set.invoke(instance, obj);
+			} catch (Exception ex) {
+				log.error(ex, "Unable to performe injection: %s", ex.getLocalizedMessage());
+			}
+		}
+	}
+
+	/**
+	 * Loads the generated injector for the given class, if exists.
+	 */
+	@SuppressWarnings("unchecked")
+	private static GeneratedInjector<Object> generatedInjector(Class<?> klass) {
+		try {
+			Class<?> injectorClass = Class.forName(klass.getName() + GeneratedInjector.SUFFIX, true, klass.getClassLoader());
+			return (GeneratedInjector<Object>) injectorClass.newInstance();
+		} catch (ClassNotFoundException ex) {
+			return null;
+		} catch (Exception ex) {
+			log.warning("Unable to load generated injector for %s: %s", klass.getName(), ex.toString());
+			return null;
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if this plan uses a {@link GeneratedInjector}
+	 */
+	boolean isGenerated() {
+		return this.generated != null;
+	}
+
+	/**
+	 * @return the number of fields injected by this plan
+	 */
+	int size() {
+		return this.points.length;
+	}
+
+	/**
+	 * An injected field: its type, scope and the method used to set it.
+	 */
+	private static final class InjectionPoint {
+		private final Class<?> type;
+		private final Scope scope;
+		private final Method set;
+
+		private InjectionPoint(Class<?> type, Scope scope, Method set) {
+			this.type = type;
+			this.scope = scope;
+			this.set = set;
+		}
+	}
+}
@@ -16,18 +16,10 @@
  */
 package br.octahedron.cotopaxi.inject;
 
-import static br.octahedron.cotopaxi.inject.DependencyManager.containsImplementation;
 import static br.octahedron.cotopaxi.inject.DependencyManager.getImplementation;
-import static br.octahedron.cotopaxi.inject.DependencyManager.registerImplementation;
+import static br.octahedron.cotopaxi.inject.DependencyManager.getSingleton;
 import static br.octahedron.cotopaxi.inject.DependencyManager.resolveDependency;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.util.Collection;
-
-import br.octahedron.util.Log;
-import br.octahedron.util.ReflectionUtil;
-
 /**
  * This entity handles classes' instances. It provide access to unique instances of the classes, and
  * it's responsible to perform dependency injection.
@@ -38,8 +30,6 @@ public class Injector {
 	
 	private Injector() { }
 
-	private static final Log log = new Log(Injector.class);
-
 	/**
 	 * Gets a <T> instance for the given {@link Class} ready to be used.
 	 * 
@@ -49,14 +39,35 @@ public class Injector {
 	 * @throws InstantiationException
 	 */
 	public static <T> T getInstance(Class<T> klass) throws InstantiationException {
+		T instance = getImplementation(klass);
+		return (instance != null) ? instance : getSingleton(klass);
+	}
+
+	/**
+	 * Gets a <T> instance for the given {@link Class} and {@link Scope} ready to be used.
+	 * 
+	 * @param klass
+	 *            the T's class
+	 * @param scope
+	 *            the instance's scope
+	 * @return The T instance.
+	 * @throws InstantiationException
+	 */
+	public static <T> T getInstance(Class<T> klass, Scope scope) throws InstantiationException {
 		try {
-			if (!containsImplementation(klass)) {
-				T instance = createInstance(klass);
-				registerImplementation(klass, instance);
+			switch (scope) {
+			case SINGLETON:
+				return getInstance(klass);
+			case REQUEST:
+				RequestScope requestScope = RequestScope.current();
+				return (requestScope != null) ? requestScope.getInstance(klass) : createInstance(klass);
+			default:
+				return createInstance(klass);
 			}
-			return getImplementation(klass);
-		} catch (Exception e) {
-			throw new InstantiationException("Unable to load class " + klass);
+		} catch (InstantiationException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			throw DependencyManager.instantiationFailure(klass, ex);
 		}
 	}
 
@@ -71,30 +82,10 @@ public class Injector {
 	}
 
 	/**
-	 * Checks if should inject any attribute and inject if necessary.
+	 * Checks if should inject any attribute and inject if necessary. The injection points are
+	 * resolved once per class.
 	 */
 	protected static void inject(Object instance) {
-		Collection<Field> fields = ReflectionUtil.getAnnotatedFields(instance.getClass(), Inject.class);
-		// for each annotated field
-		for (Field f : fields) {
-			try {
-				Inject inject = f.getAnnotation(Inject.class);
-				// create the object to inject
-				Class<?> klass = f.getType();
-				Object obj;
-				if (inject.newInstance()) {
-					obj = createInstance(klass);
-				} else {
-					obj = getInstance(klass);
-				}
-				// gets the instance's method to inject the object created above
-				log.info("Injecting object %s into object %s", obj.getClass().getSimpleName(), instance.getClass().getSimpleName());
-				Method set = ReflectionUtil.getSetMethod(klass.getSimpleName(), instance.getClass(), klass);
-				set.invoke(instance, obj);
-			} catch (Exception ex) {
-				log.error(ex, "Unable to performe injection: %s", ex.getLocalizedMessage());
-			}
-		}
+		InjectionPlan.of(instance.getClass()).inject(instance);
 	}
 }
-
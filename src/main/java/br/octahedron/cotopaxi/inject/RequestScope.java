@@ -0,0 +1,73 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.inject;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Holds the {@link Scope#REQUEST} instances of a request. The scope is bound to the thread that is
+ * serving the request, along with the request's context.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public final class RequestScope {
+
+	private static final ThreadLocal<RequestScope> scopes = new ThreadLocal<RequestScope>();
+
+	/**
+	 * @return the scope bound to the current thread, or <code>null</code> if there's none.
+	 */
+	public static RequestScope current() {
+		return scopes.get();
+	}
+
+	/**
+	 * Binds the given scope to the current thread, or unbinds the current one if it's
+	 * <code>null</code>.
+	 */
+	public static void bind(RequestScope scope) {
+		scopes.set(scope);
+	}
+
+	private Map<Class<?>, Object> instances = null;
+
+	/**
+	 * Gets the instance of the given class for this request, creating it if necessary.
+	 */
+	@SuppressWarnings("unchecked")
+	synchronized <T> T getInstance(Class<T> klass) throws InstantiationException, IllegalAccessException, ClassNotFoundException {
+		if (this.instances == null) {
+			this.instances = new HashMap<Class<?>, Object>();
+		}
+		T instance = (T) this.instances.get(klass);
+		if (instance == null) {
+			instance = Injector.createInstance(klass);
+			this.instances.put(klass, instance);
+		}
+		return instance;
+	}
+
+	/**
+	 * Discards all instances of this scope.
+	 */
+	public synchronized void clear() {
+		if (this.instances != null) {
+			this.instances.clear();
+		}
+	}
+}
@@ -0,0 +1,40 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.inject;
+
+/**
+ * The scopes of injected instances.
+ * 
+ * @see Inject#scope()
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public enum Scope {
+	/**
+	 * A single instance, shared by the whole application
+	 */
+	SINGLETON,
+	/**
+	 * An instance for each request, shared by the objects injected while serving it. Outside a
+	 * request, it behaves as PROTOTYPE.
+	 */
+	REQUEST,
+	/**
+	 * A new instance for each injection
+	 */
+	PROTOTYPE;
+}
@@ -0,0 +1,75 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.interceptor;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+
+import br.octahedron.cotopaxi.controller.ControllerContext;
+import br.octahedron.util.Log;
+
+/**
+ * The ordered {@link ControllerInterceptor}s to be executed before a controller {@link Method},
+ * with the annotations that fire each one of them. It's built once per controller method by the
+ * {@link InterceptorManager}, so annotations aren't looked up at each request.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public final class InterceptorChain {
+
+	private static final Log log = new Log(InterceptorChain.class);
+
+	private final ControllerInterceptor[] interceptors;
+	private final Annotation[] annotations;
+
+	/**
+	 * @param interceptors
+	 *            The interceptors to be executed, in execution order
+	 * @param annotations
+	 *            The annotations that fire each interceptor
+	 */
+	protected InterceptorChain(ControllerInterceptor[] interceptors, Annotation[] annotations) {
+		this.interceptors = interceptors;
+		this.annotations = annotations;
+	}
+
+	/**
+	 * Executes the interceptors. If an interceptor answers or forwards the request, the remaining
+	 * interceptors aren't executed.
+	 * 
+	 * @param context
+	 *            The current {@link ControllerContext}
+	 */
+	public void execute(ControllerContext context) {
+		for (int i = 0; i < this.interceptors.length; i++) {
+			ControllerInterceptor interceptor = this.interceptors[i];
+			log.debug("Executing ControllerInterceptor %s with annotation %s", interceptor.getClass(), this.annotations[i].annotationType());
+			interceptor.execute(this.annotations[i]);
+			if (context != null && (context.isAnswered() || context.forwarded())) {
+				log.debug("Controller already answered/forwarded - aborting interceptors execution!");
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @return The number of interceptors at this chain
+	 */
+	public int size() {
+		return this.interceptors.length;
+	}
+}
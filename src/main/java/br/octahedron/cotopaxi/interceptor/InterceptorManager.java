@@ -23,6 +23,7 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -81,18 +82,30 @@ public class InterceptorManager {
 	 *            the {@link Controller} method {@link Annotation}
 	 */
 	public void execute(Method controllerMethod, ControllerContext context) {
+		this.chain(controllerMethod).execute(context);
+	}
+
+	/**
+	 * Builds the {@link InterceptorChain} for the given {@link Controller} method, containing only
+	 * the {@link ControllerInterceptor}s fired by the method's annotations, in the order they were
+	 * added.
+	 * 
+	 * @param controllerMethod
+	 *            the {@link Controller} method
+	 * @return The {@link InterceptorChain} for the given method
+	 */
+	public InterceptorChain chain(Method controllerMethod) {
+		List<ControllerInterceptor> interceptors = new ArrayList<ControllerInterceptor>();
+		List<Annotation> annotations = new ArrayList<Annotation>();
 		for (Entry<Class<? extends Annotation>, ControllerInterceptor> entry : this.controllerInterceptors.entrySet()) {
 			Annotation ann = getAnnotation(controllerMethod, entry.getKey());
 			if (ann != null) {
-				ControllerInterceptor interceptor = entry.getValue();
-				log.debug("Executing ControllerInterceptor %s with annotation %s", interceptor.getClass(), entry.getKey());
-				interceptor.execute(ann);
-			}
-			if (context != null && (context.isAnswered() || context.forwarded())) {
-				log.debug("Controller already answered/forwarded - aborting interceptors execution!");
-				break;
+				interceptors.add(entry.getValue());
+				annotations.add(ann);
 			}
 		}
+		return new InterceptorChain(interceptors.toArray(new ControllerInterceptor[interceptors.size()]), annotations.toArray(new Annotation[annotations
+				.size()]));
 	}
 
 	/**
@@ -0,0 +1,338 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.processor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic.Kind;
+
+import br.octahedron.cotopaxi.config.Configuration;
+import br.octahedron.cotopaxi.config.ConfigurationIndex;
+import br.octahedron.cotopaxi.config.ConfigurationLoader;
+import br.octahedron.cotopaxi.config.ConfigurationSyntaxException;
+import br.octahedron.cotopaxi.controller.ControllerDescriptor;
+import br.octahedron.cotopaxi.inject.GeneratedInjector;
+import br.octahedron.cotopaxi.inject.Inject;
+import br.octahedron.cotopaxi.inject.Scope;
+import br.octahedron.util.FileUtil;
+
+/**
+ * An annotation processor that generates, at build time, the code that Cotopaxi otherwise
+ * resolves by reflection at startup:
+ * 
+ * <ul>
+ * <li>a {@link GeneratedInjector} for each concrete class with {@link Inject} fields, that calls
+ * the class' "set" methods directly;</li>
+ * <li>if the <code>cotopaxi.config</code> option points to the application configuration file, a
+ * {@link ConfigurationIndex} with the file already parsed.</li>
+ * </ul>
+ * 
+ * Classes whose injection can't be generated, such as the ones without a public "set" method, are
+ * left to the reflection based injection. The compiled configuration is only used while the
+ * configuration file isn't changed.
+ * 
+ * To use it, add it to the compiler processors. E.g.:
+ * 
+ * <pre>
+ * javac -processor br.octahedron.cotopaxi.processor.CotopaxiProcessor -Acotopaxi.config=war/WEB-INF/application.config ...
+ * </pre>
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+@SupportedAnnotationTypes("*")
+@SupportedOptions(CotopaxiProcessor.CONFIG_OPTION)
+public class CotopaxiProcessor extends AbstractProcessor {
+
+	/**
+	 * The option with the path to the application configuration file
+	 */
+	public static final String CONFIG_OPTION = "cotopaxi.config";
+
+	private boolean configurationGenerated = false;
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.annotation.processing.AbstractProcessor#getSupportedSourceVersion()
+	 */
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see javax.annotation.processing.AbstractProcessor#process(java.util.Set,
+	 * javax.annotation.processing.RoundEnvironment)
+	 */
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements())) {
+			this.processType(type);
+		}
+		String configFile = this.processingEnv.getOptions().get(CONFIG_OPTION);
+		if (!this.configurationGenerated && configFile != null) {
+			this.configurationGenerated = true;
+			this.generateConfiguration(configFile);
+		}
+		return false;
+	}
+
+	private void processType(TypeElement type) {
+		this.generateInjector(type);
+		for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements())) {
+			this.processType(nested);
+		}
+	}
+
+	// injectors
+
+	private void generateInjector(TypeElement type) {
+		if (!this.isInstantiable(type)) {
+			return;
+		}
+		List<VariableElement> fields = this.injectedFields(type);
+		if (fields.isEmpty()) {
+			return;
+		}
+		List<String> statements = new ArrayList<String>(fields.size());
+		for (VariableElement field : fields) {
+			TypeMirror fieldType = this.processingEnv.getTypeUtils().erasure(field.asType());
+			if (fieldType.getKind() != TypeKind.DECLARED) {
+				this.note(type, "Field %s isn't injectable, using reflection", field.getSimpleName());
+				return;
+			}
+			String setter = this.setterName(fieldType);
+			if (!this.hasSetter(type, setter, fieldType)) {
+				this.note(type, "There's no public method %s for field %s, using reflection", setter, field.getSimpleName());
+				return;
+			}
+			Inject inject = field.getAnnotation(Inject.class);
+			Scope scope = inject.newInstance() ? Scope.PROTOTYPE : inject.scope();
+			statements.add(String.format("instance.%s(dependency(%s.class, %s.%s));", setter, fieldType, Scope.class.getName(), scope.name()));
+		}
+
+		String packageName = this.packageOf(type);
+		String binaryName = this.processingEnv.getElementUtils().getBinaryName(type).toString();
+		String injectorName = binaryName.substring(packageName.isEmpty() ? 0 : packageName.length() + 1) + GeneratedInjector.SUFFIX;
+		String typeName = type.getQualifiedName().toString();
+		try {
+			PrintWriter out = this.createSource(packageName, injectorName, type);
+			out.printf("public final class %s extends %s<%s> {%n%n", injectorName, GeneratedInjector.class.getName(), typeName);
+			out.printf("\t@Override%n");
+			out.printf("\tpublic void inject(%s instance) {%n", typeName);
+			for (String statement : statements) {
+				out.printf("\t\t%s%n", statement);
+			}
+			out.printf("\t}%n}%n");
+			out.close();
+		} catch (IOException ex) {
+			this.processingEnv.getMessager().printMessage(Kind.WARNING, "Unable to generate injector: " + ex.getMessage(), type);
+		}
+	}
+
+	/**
+	 * Checks if the given type can be instantiated by the {@link br.octahedron.cotopaxi.inject.Injector}
+	 */
+	private boolean isInstantiable(TypeElement type) {
+		if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.ABSTRACT)) {
+			return false;
+		}
+		Element element = type;
+		while (element instanceof TypeElement) {
+			TypeElement current = (TypeElement) element;
+			if (current.getModifiers().contains(Modifier.PRIVATE)) {
+				return false;
+			}
+			if (current.getNestingKind() == NestingKind.MEMBER && !current.getModifiers().contains(Modifier.STATIC)) {
+				return false;
+			}
+			if (current.getNestingKind() == NestingKind.LOCAL || current.getNestingKind() == NestingKind.ANONYMOUS) {
+				return false;
+			}
+			element = current.getEnclosingElement();
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the {@link Inject} annotated fields of the given type and its super classes, in the
+	 * same order used by the reflection based injection.
+	 */
+	private List<VariableElement> injectedFields(TypeElement type) {
+		List<VariableElement> fields = new ArrayList<VariableElement>();
+		TypeElement current = type;
+		while (current != null) {
+			for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+				if (field.getAnnotation(Inject.class) != null) {
+					fields.add(field);
+				}
+			}
+			TypeMirror superclass = current.getSuperclass();
+			current = (superclass.getKind() == TypeKind.DECLARED) ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+		}
+		return fields;
+	}
+
+	/**
+	 * Gets the "set" method name for the given type, the same way
+	 * {@link br.octahedron.util.ReflectionUtil#getSetMethod(String, Class, Class)} does.
+	 */
+	private String setterName(TypeMirror fieldType) {
+		String name = ((DeclaredType) fieldType).asElement().getSimpleName().toString();
+		return (name.length() > 2) ? "set" + name.substring(0, 1).toUpperCase() + name.substring(1) : name.toUpperCase();
+	}
+
+	private boolean hasSetter(TypeElement type, String setter, TypeMirror fieldType) {
+		for (ExecutableElement method : ElementFilter.methodsIn(this.processingEnv.getElementUtils().getAllMembers(type))) {
+			if (method.getSimpleName().contentEquals(setter) && method.getModifiers().contains(Modifier.PUBLIC) && method.getParameters().size() == 1) {
+				TypeMirror paramType = this.processingEnv.getTypeUtils().erasure(method.getParameters().get(0).asType());
+				if (this.processingEnv.getTypeUtils().isSameType(paramType, fieldType)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	// configuration
+
+	private void generateConfiguration(String configFile) {
+		Configuration configuration;
+		try {
+			configuration = ConfigurationLoader.parse(FileUtil.getBytes(new File(configFile).getAbsolutePath()));
+		} catch (IOException ex) {
+			this.processingEnv.getMessager().printMessage(Kind.WARNING, "Unable to read configuration file " + configFile + ": " + ex.getMessage());
+			return;
+		} catch (ConfigurationSyntaxException ex) {
+			this.processingEnv.getMessager().printMessage(Kind.ERROR, "Invalid configuration file " + configFile + ": " + ex.getToken());
+			return;
+		}
+		String className = ConfigurationIndex.CLASS_NAME;
+		String packageName = className.substring(0, className.lastIndexOf('.'));
+		String simpleName = className.substring(packageName.length() + 1);
+		try {
+			PrintWriter out = this.createSource(packageName, simpleName);
+			out.printf("public final class %s implements %s {%n%n", simpleName, ConfigurationIndex.class.getName());
+			out.printf("\t@Override%n");
+			out.printf("\tpublic %1$s configuration() {%n", Configuration.class.getName());
+			out.printf("\t\t%1$s configuration = new %1$s(%2$s);%n", Configuration.class.getName(), literal(configuration.getChecksum()));
+			for (String[] property : configuration.getProperties()) {
+				out.printf("\t\tconfiguration.addProperty(%s, %s);%n", literal(property[0]), literal(property[1]));
+			}
+			for (String[] dependency : configuration.getDependencies()) {
+				out.printf("\t\tconfiguration.addDependency(%s, %s);%n", literal(dependency[0]), literal(dependency[1]));
+			}
+			for (String interceptor : configuration.getInterceptors()) {
+				out.printf("\t\tconfiguration.addInterceptor(%s);%n", literal(interceptor));
+			}
+			for (String bootloader : configuration.getBootloaders()) {
+				out.printf("\t\tconfiguration.addBootloader(%s);%n", literal(bootloader));
+			}
+			for (ControllerDescriptor controller : configuration.getControllers()) {
+				out.printf("\t\tconfiguration.addController(new %s(%s, %s, %s, %s));%n", ControllerDescriptor.class.getName(), literal(controller.getUrl()),
+						literal(controller.getHttpMethod()), literal(controller.getControllerName()), literal(controller.getControllerClass()));
+			}
+			out.printf("\t\treturn configuration;%n\t}%n}%n");
+			out.close();
+		} catch (IOException ex) {
+			this.processingEnv.getMessager().printMessage(Kind.WARNING, "Unable to generate compiled configuration: " + ex.getMessage());
+		}
+	}
+
+	// utilities
+
+	private PrintWriter createSource(String packageName, String simpleName, Element... originatingElements) throws IOException {
+		String name = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+		PrintWriter out = new PrintWriter(this.processingEnv.getFiler().createSourceFile(name, originatingElements).openWriter());
+		if (!packageName.isEmpty()) {
+			out.printf("package %s;%n%n", packageName);
+		}
+		out.printf("/**%n * Generated by %s. Don't edit.%n */%n", CotopaxiProcessor.class.getName());
+		return out;
+	}
+
+	private String packageOf(TypeElement type) {
+		PackageElement pkg = this.processingEnv.getElementUtils().getPackageOf(type);
+		return pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+	}
+
+	private void note(Element element, String format, Object... args) {
+		this.processingEnv.getMessager().printMessage(Kind.NOTE, String.format(format, args), element);
+	}
+
+	/**
+	 * Gets the given string as a java literal
+	 */
+	private static String literal(String value) {
+		if (value == null) {
+			return "null";
+		}
+		StringBuilder buf = new StringBuilder(value.length() + 2);
+		buf.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				buf.append("\\\"");
+				break;
+			case '\\':
+				buf.append("\\\\");
+				break;
+			case '\n':
+				buf.append("\\n");
+				break;
+			case '\r':
+				buf.append("\\r");
+				break;
+			case '\t':
+				buf.append("\\t");
+				break;
+			default:
+				if (c < 0x20 || c > 0x7e) {
+					buf.append(String.format("\\u%04x", (int) c));
+				} else {
+					buf.append(c);
+				}
+			}
+		}
+		return buf.append('"').toString();
+	}
+}
@@ -0,0 +1,264 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.route;
+
+import static br.octahedron.cotopaxi.CotopaxiProperty.ROUTE_CACHE_SIZE;
+import static br.octahedron.cotopaxi.CotopaxiProperty.property;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import br.octahedron.util.Log;
+
+/**
+ * The default {@link RouteCache}. It's a size bounded cache with near LRU eviction.
+ * 
+ * Lookups don't lock: each entry just keeps a stamp of its last access. The access clock only
+ * advances when entries are added, and an entry is only stamped again after the clock advanced,
+ * so lookups for hot entries don't write to shared memory. When the cache grows beyond its
+ * maximum size, a single thread evicts the least recently accessed entries, bringing the cache
+ * back to 90% of its maximum size. The others threads don't wait for the eviction.
+ * 
+ * The hits and misses counters are striped by thread, and are counted by each cache instance.
+ * The {@link Router} uses a distinct instance for not found URLs, so its counters aren't mixed
+ * with the resolved routes' ones.
+ * 
+ * Entries are kept by http method, so the requested URL can be used as key as is.
+ * 
+ * The cache maximum size is defined by the ROUTE_CACHE_SIZE property.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class BoundedRouteCache implements RouteCache {
+
+	private static final Log log = new Log(BoundedRouteCache.class);
+	private static final float EVICTION_FACTOR = 0.9f;
+
+	private final EnumMap<HttpMethod, ConcurrentHashMap<String, Entry>> entries;
+	private final ReentrantLock evictionLock = new ReentrantLock();
+	private final int maxSize;
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicLong clock = new AtomicLong();
+	private final Counter hits = new Counter();
+	private final Counter misses = new Counter();
+	private final AtomicLong evictions = new AtomicLong();
+
+	public BoundedRouteCache() {
+		this(Integer.parseInt(property(ROUTE_CACHE_SIZE)));
+	}
+
+	public BoundedRouteCache(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("Route cache size should be greater than zero");
+		}
+		this.maxSize = maxSize;
+		// all method maps are created here, so the enum map is never changed after construction
+		this.entries = new EnumMap<HttpMethod, ConcurrentHashMap<String, Entry>>(HttpMethod.class);
+		for (HttpMethod method : HttpMethod.values()) {
+			this.entries.put(method, new ConcurrentHashMap<String, Entry>());
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see br.octahedron.cotopaxi.route.RouteCache#get(br.octahedron.cotopaxi.route.HttpMethod,
+	 * java.lang.String)
+	 */
+	@Override
+	public Route get(HttpMethod method, String url) {
+		Entry entry = this.entries.get(method).get(url);
+		if (entry != null) {
+			long now = this.clock.get();
+			if (entry.lastAccess != now) {
+				entry.lastAccess = now;
+			}
+			this.hits.increment();
+			return entry.route;
+		} else {
+			this.misses.increment();
+			return null;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see br.octahedron.cotopaxi.route.RouteCache#put(br.octahedron.cotopaxi.route.HttpMethod,
+	 * java.lang.String, br.octahedron.cotopaxi.route.Route)
+	 */
+	@Override
+	public void put(HttpMethod method, String url, Route route) {
+		if (this.entries.get(method).put(url, new Entry(route, this.clock.incrementAndGet())) == null
+				&& this.size.incrementAndGet() > this.maxSize && this.evictionLock.tryLock()) {
+			try {
+				this.evict();
+			} finally {
+				this.evictionLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Evicts the least recently accessed entries. It finds the access stamp bellow which entries
+	 * should be removed and removes them.
+	 */
+	private void evict() {
+		long[] stamps = new long[this.size()];
+		int count = 0;
+		for (ConcurrentHashMap<String, Entry> methodEntries : this.entries.values()) {
+			for (Entry entry : methodEntries.values()) {
+				if (count == stamps.length) {
+					break;
+				}
+				stamps[count++] = entry.lastAccess;
+			}
+		}
+		int toKeep = (int) (this.maxSize * EVICTION_FACTOR);
+		int toRemove = count - toKeep;
+		if (toRemove <= 0) {
+			return;
+		}
+		Arrays.sort(stamps, 0, count);
+		long threshold = stamps[toRemove - 1];
+		int removed = 0;
+		for (ConcurrentHashMap<String, Entry> methodEntries : this.entries.values()) {
+			for (Map.Entry<String, Entry> entry : methodEntries.entrySet()) {
+				if (removed == toRemove) {
+					break;
+				}
+				// entries replaced meanwhile aren't removed
+				if (entry.getValue().lastAccess <= threshold && methodEntries.remove(entry.getKey(), entry.getValue())) {
+					removed++;
+				}
+			}
+		}
+		this.size.addAndGet(-removed);
+		this.evictions.addAndGet(removed);
+		log.debug("%d routes evicted from cache", removed);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see br.octahedron.cotopaxi.route.RouteCache#clear()
+	 */
+	@Override
+	public void clear() {
+		for (ConcurrentHashMap<String, Entry> methodEntries : this.entries.values()) {
+			for (String url : methodEntries.keySet()) {
+				if (methodEntries.remove(url) != null) {
+					this.size.decrementAndGet();
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The number of cached entries
+	 */
+	public int size() {
+		return this.size.get();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see br.octahedron.cotopaxi.route.RouteCache#hits()
+	 */
+	@Override
+	public long hits() {
+		return this.hits.sum();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see br.octahedron.cotopaxi.route.RouteCache#misses()
+	 */
+	@Override
+	public long misses() {
+		return this.misses.sum();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see br.octahedron.cotopaxi.route.RouteCache#evictions()
+	 */
+	@Override
+	public long evictions() {
+		return this.evictions.get();
+	}
+
+	/**
+	 * A cache entry
+	 */
+	private static class Entry {
+		private final Route route;
+		private volatile long lastAccess;
+
+		private Entry(Route route, long lastAccess) {
+			this.route = route;
+			this.lastAccess = lastAccess;
+		}
+	}
+
+	/**
+	 * A counter striped by thread, so threads counting at the same time seldom write to the same
+	 * cache line. Its sum isn't atomic, what is fine for statistics.
+	 */
+	private static final class Counter {
+		// longs by stripe, so each stripe takes a whole cache line
+		private static final int PADDING = 8;
+		private static final int STRIPES = stripes();
+
+		private final AtomicLongArray cells = new AtomicLongArray(STRIPES * PADDING);
+
+		private void increment() {
+			int stripe = (int) (Thread.currentThread().getId() & (STRIPES - 1));
+			this.cells.incrementAndGet(stripe * PADDING);
+		}
+
+		private long sum() {
+			long sum = 0;
+			for (int i = 0; i < STRIPES; i++) {
+				sum += this.cells.get(i * PADDING);
+			}
+			return sum;
+		}
+
+		/**
+		 * @return the number of stripes: the power of two next to the number of processors, up to
+		 *         64.
+		 */
+		private static int stripes() {
+			int processors = Math.min(Runtime.getRuntime().availableProcessors(), 64);
+			int stripes = 1;
+			while (stripes < processors) {
+				stripes <<= 1;
+			}
+			return stripes;
+		}
+	}
+}
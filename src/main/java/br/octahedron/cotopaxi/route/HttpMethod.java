@@ -0,0 +1,50 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.route;
+
+/**
+ * The HTTP methods supported by the {@link Router}.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public enum HttpMethod {
+
+	GET, POST, PUT, DELETE, HEAD, OPTIONS, TRACE;
+
+	private static final HttpMethod[] METHODS = HttpMethod.values();
+
+	/**
+	 * Gets the {@link HttpMethod} for the given method name, ignoring case. Unlike
+	 * {@link HttpMethod#valueOf(String)}, it doesn't create any intermediate {@link String}.
+	 * 
+	 * @param method
+	 *            The method name, e.g.: "GET", "post"
+	 * @return The {@link HttpMethod} for the given name, or <code>null</code> if there's no such
+	 *         method.
+	 */
+	public static HttpMethod of(String method) {
+		if (method != null) {
+			for (HttpMethod httpMethod : METHODS) {
+				String name = httpMethod.name();
+				if (name.length() == method.length() && name.regionMatches(true, 0, method, 0, name.length())) {
+					return httpMethod;
+				}
+			}
+		}
+		return null;
+	}
+}
@@ -19,6 +19,9 @@ package br.octahedron.cotopaxi.route;
 /**
  * Indicates an 404 error.
  * 
+ * Not found URLs are a common case, mostly from scanners and bots, so this exception doesn't
+ * fill its stack trace.
+ * 
  * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
  */
 public class NotFoundExeption extends Exception {
@@ -33,6 +36,16 @@ public class NotFoundExeption extends Exception {
 		this.method = method;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Throwable#fillInStackTrace()
+	 */
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		return this;
+	}
+
 	/**
 	 * @return the url
 	 */
@@ -46,7 +59,4 @@ public class NotFoundExeption extends Exception {
 	public String getMethod() {
 		return method;
 	}
-
-
-
 }
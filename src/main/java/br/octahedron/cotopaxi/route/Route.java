@@ -0,0 +1,172 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.route;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+
+import br.octahedron.cotopaxi.controller.ControllerDescriptor;
+
+/**
+ * A compiled dynamic route. It holds the route's {@link ControllerDescriptor} and the names, types
+ * and segment positions (slots) of its URL variables, computed once when the route is added.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public final class Route {
+
+	private static final char SEPARATOR = '/';
+
+	private final RouteTable table;
+	private final ControllerDescriptor controllerDesc;
+	private final String allowedMethods;
+	private final String[] variables;
+	private final VariableType[] types;
+	private final int[] slots;
+
+	/**
+	 * @param controllerDesc
+	 *            The route's {@link ControllerDescriptor}
+	 * @param segments
+	 *            The mapping URL segments, without the empty leading segment
+	 */
+	protected Route(ControllerDescriptor controllerDesc, String[] segments) {
+		this(null, controllerDesc, segments, null);
+	}
+
+	/**
+	 * @param table
+	 *            The {@link RouteTable} this route belongs to
+	 * @param controllerDesc
+	 *            The route's {@link ControllerDescriptor}
+	 * @param segments
+	 *            The mapping URL segments, without the empty leading segment
+	 * @param allowedMethods
+	 *            The value of the Allow header for this route's URL, or <code>null</code>
+	 */
+	protected Route(RouteTable table, ControllerDescriptor controllerDesc, String[] segments, String allowedMethods) {
+		List<String> names = new ArrayList<String>();
+		List<VariableType> variableTypes = new ArrayList<VariableType>();
+		List<Integer> positions = new ArrayList<Integer>();
+		for (int i = 0; i < segments.length; i++) {
+			if (VariableType.isVariable(segments[i])) {
+				names.add(VariableType.variableName(segments[i]));
+				variableTypes.add(VariableType.variableType(segments[i]));
+				positions.add(i);
+			}
+		}
+		this.table = table;
+		this.controllerDesc = controllerDesc;
+		this.allowedMethods = allowedMethods;
+		this.variables = names.toArray(new String[names.size()]);
+		this.types = variableTypes.toArray(new VariableType[variableTypes.size()]);
+		this.slots = new int[positions.size()];
+		for (int i = 0; i < this.slots.length; i++) {
+			this.slots[i] = positions.get(i);
+		}
+	}
+
+	/**
+	 * @return the route's {@link ControllerDescriptor}
+	 */
+	public ControllerDescriptor getControllerDescriptor() {
+		return this.controllerDesc;
+	}
+
+	/**
+	 * Checks if this route belongs to the given {@link RouteTable}. Routes cached before the tables
+	 * be replaced don't belong to the current tables, and should be ignored.
+	 */
+	protected boolean belongsTo(RouteTable table) {
+		return this.table == table;
+	}
+
+	/**
+	 * @return The value of the Allow header for this route's URL, computed when the routes are
+	 *         compiled, or <code>null</code> if it isn't a route from the allowed methods table.
+	 */
+	protected String allowedMethods() {
+		return this.allowedMethods;
+	}
+
+	/**
+	 * @return the number of variables of this route
+	 */
+	protected int variablesCount() {
+		return this.variables.length;
+	}
+
+	/**
+	 * Sets the variables values, found while matching the URL, as request attributes. The values
+	 * are converted to the variables types.
+	 * 
+	 * @param url
+	 *            The requested URL
+	 * @param bounds
+	 *            The variables values bounds, as start/end pairs, found while matching this route
+	 * @param request
+	 *            The request to set the attributes
+	 */
+	protected void bind(String url, int[] bounds, HttpServletRequest request) {
+		for (int i = 0; i < this.variables.length; i++) {
+			String value = url.substring(bounds[2 * i], bounds[2 * i + 1]);
+			request.setAttribute(this.variables[i], this.types[i].convert(value));
+		}
+	}
+
+	/**
+	 * Extracts the variables values from the given URL, in a single pass over it, and sets them,
+	 * converted to the variables types, as request attributes. The given URL should match this
+	 * route.
+	 * 
+	 * @param url
+	 *            The requested URL
+	 * @param request
+	 *            The request to set the attributes
+	 */
+	protected void extract(String url, HttpServletRequest request) {
+		int length = (url.length() > 1 && url.charAt(url.length() - 1) == SEPARATOR) ? url.length() - 1 : url.length();
+		int start = (length > 0 && url.charAt(0) == SEPARATOR) ? 1 : 0;
+		int segment = 0;
+		int slot = 0;
+		while (slot < this.slots.length && start <= length) {
+			int end = url.indexOf(SEPARATOR, start);
+			if (end < 0 || end > length) {
+				end = length;
+			}
+			if (segment == this.slots[slot]) {
+				String value = url.substring(start, end);
+				request.setAttribute(this.variables[slot], this.types[slot].convert(value));
+				slot++;
+			}
+			segment++;
+			start = end + 1;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Object#toString()
+	 */
+	@Override
+	public String toString() {
+		return String.valueOf(this.controllerDesc);
+	}
+}
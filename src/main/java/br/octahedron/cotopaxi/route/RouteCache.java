@@ -0,0 +1,76 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.route;
+
+
+/**
+ * A cache for resolved dynamic routes, used by the {@link Router} to avoid walking the routes'
+ * tries for already seen URLs.
+ * 
+ * Implementations should be bounded and safe to be used by many threads at the same time, since
+ * a single cache is shared by all the requests.
+ * 
+ * The implementation to be used is defined by the ROUTE_CACHE property.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public interface RouteCache {
+
+	/**
+	 * Gets the cached {@link Route} for the given method and URL.
+	 * 
+	 * @param method
+	 *            The requested http method
+	 * @param url
+	 *            The requested URL
+	 * @return The cached {@link Route}, or <code>null</code> if there's nothing cached for the
+	 *         given method and URL.
+	 */
+	public abstract Route get(HttpMethod method, String url);
+
+	/**
+	 * Caches the given {@link Route}, evicting old entries if necessary.
+	 * 
+	 * @param method
+	 *            The requested http method
+	 * @param url
+	 *            The requested URL
+	 * @param route
+	 *            The {@link Route} to be cached
+	 */
+	public abstract void put(HttpMethod method, String url, Route route);
+
+	/**
+	 * Removes all cached entries.
+	 */
+	public abstract void clear();
+
+	/**
+	 * @return The number of lookups that found a cached entry
+	 */
+	public abstract long hits();
+
+	/**
+	 * @return The number of lookups that found no cached entry
+	 */
+	public abstract long misses();
+
+	/**
+	 * @return The number of entries evicted to keep the cache bounded
+	 */
+	public abstract long evictions();
+}
@@ -0,0 +1,119 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.route;
+
+/**
+ * A node of the dynamic routes' segment trie. Each node represents an URL segment and can have
+ * many literal children, indexed by the segment's text ignoring case, and a single variable child per
+ * {@link VariableType}, that matches any acceptable value for that type.
+ * 
+ * Literal children always take precedence over the variable children. If a literal branch fails
+ * to match the remaining of the URL, the variable branches are tried, following the
+ * {@link VariableType} declaration order.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+class RouteNode {
+
+	private static final char SEPARATOR = '/';
+	private static final VariableType[] TYPES = VariableType.values();
+
+	private SegmentMap<RouteNode> literals;
+	private RouteNode[] variables;
+	private Route route;
+
+	/**
+	 * Adds the given route to this trie, creating the nodes for the given mapping URL segments, if
+	 * necessary.
+	 * 
+	 * @param segments
+	 *            The mapping URL segments, without the empty leading segment
+	 * @param route
+	 *            The route to be added
+	 */
+	protected void add(String[] segments, Route route) {
+		RouteNode node = this;
+		for (String segment : segments) {
+			if (VariableType.isVariable(segment)) {
+				int type = VariableType.variableType(segment).ordinal();
+				if (node.variables == null) {
+					node.variables = new RouteNode[TYPES.length];
+				}
+				if (node.variables[type] == null) {
+					node.variables[type] = new RouteNode();
+				}
+				node = node.variables[type];
+			} else {
+				if (node.literals == null) {
+					node.literals = new SegmentMap<RouteNode>();
+				}
+				RouteNode child = node.literals.get(segment, 0, segment.length());
+				if (child == null) {
+					child = new RouteNode();
+					node.literals.put(segment, child);
+				}
+				node = child;
+			}
+		}
+		node.route = route;
+	}
+
+	/**
+	 * Finds the route for the given URL, starting at the given position. The variables values
+	 * bounds are recorded, while matching, at the given bounds array.
+	 * 
+	 * @param url
+	 *            The requested URL
+	 * @param start
+	 *            The index of the first char of the current segment
+	 * @param length
+	 *            The URL length to be considered, without trailing separator
+	 * @param bounds
+	 *            The array to record the variables values bounds, as start/end pairs
+	 * @param variable
+	 *            The index of the next variable to be recorded
+	 * @return The {@link Route} for the given url, or <code>null</code> if there's no route for
+	 *         it.
+	 */
+	protected Route find(String url, int start, int length, int[] bounds, int variable) {
+		if (start > length) {
+			return this.route;
+		}
+		int end = url.indexOf(SEPARATOR, start);
+		if (end < 0 || end > length) {
+			end = length;
+		}
+		Route result = null;
+		if (this.literals != null) {
+			RouteNode child = this.literals.get(url, start, end);
+			if (child != null) {
+				result = child.find(url, end + 1, length, bounds, variable);
+			}
+		}
+		if (result == null && this.variables != null) {
+			for (int type = 0; type < this.variables.length && result == null; type++) {
+				RouteNode child = this.variables[type];
+				if (child != null && TYPES[type].accepts(url, start, end)) {
+					bounds[2 * variable] = start;
+					bounds[2 * variable + 1] = end;
+					result = child.find(url, end + 1, length, bounds, variable + 1);
+				}
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.route;
+
+import br.octahedron.cotopaxi.controller.ControllerDescriptor;
+
+/**
+ * The routes for a single {@link HttpMethod}. It holds the static URLs map and the dynamic URLs
+ * trie for the method.
+ * 
+ * The {@link Router} also keeps a table with a route per mapping URL, no matter the method, whose
+ * routes know the methods allowed for its URL. All the method tables know this allowed methods
+ * table, so it's possible to tell, when a URL isn't found for a method, which methods it's
+ * allowed for.
+ * 
+ * A table is changed only while it's built. After published by the {@link Router}, it's never
+ * changed again.
+ * 
+ * URLs are handled by index arithmetic: lookups receive the requested URL and the length to be
+ * considered, without trailing separator, and never copy or lowercase the URL.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+class RouteTable {
+
+	private static final String SEPARATOR = "/";
+
+	// static URLS vs Route
+	private final SegmentMap<Route> staticURLs = new SegmentMap<Route>();
+	// dynamic URLs trie
+	private final RouteNode dynamicURLs = new RouteNode();
+	// the allowed methods table
+	private final RouteTable allowed;
+	// the greatest number of variables of a dynamic URL
+	private int maxVariables = 0;
+	// marks not found URLs at the not found cache
+	private final Route notFound = new Route(this, null, new String[0], null);
+
+	/**
+	 * @param allowed
+	 *            The allowed methods table, or <code>null</code> if this is the allowed methods
+	 *            table.
+	 */
+	protected RouteTable(RouteTable allowed) {
+		this.allowed = allowed;
+	}
+
+	/**
+	 * Adds a route
+	 * 
+	 * @param segments
+	 *            The mapping URL segments
+	 * @param allowedMethods
+	 *            The methods allowed for the mapping URL, used only by the allowed methods table
+	 */
+	protected void add(ControllerDescriptor controllerDesc, String[] segments, String allowedMethods) {
+		Route route = new Route(this, controllerDesc, segments, allowedMethods);
+		if (route.variablesCount() == 0) {
+			StringBuilder url = new StringBuilder(SEPARATOR);
+			for (int i = 0; i < segments.length; i++) {
+				if (i > 0) {
+					url.append(SEPARATOR);
+				}
+				url.append(segments[i]);
+			}
+			this.staticURLs.put(url.toString(), route);
+		} else {
+			this.dynamicURLs.add(segments, route);
+			this.maxVariables = Math.max(this.maxVariables, route.variablesCount());
+		}
+	}
+
+	/**
+	 * Finds the static URL route.
+	 * 
+	 * @param url
+	 *            The requested URL
+	 * @param length
+	 *            The URL length to be considered
+	 * @return The {@link Route} for the given URL, or <code>null</code> if there's no static URL
+	 *         for it.
+	 */
+	protected Route findStatic(String url, int length) {
+		return (length == 0) ? this.staticURLs.get(SEPARATOR, 0, 1) : this.staticURLs.get(url, 0, length);
+	}
+
+	/**
+	 * Finds the dynamic URL route.
+	 * 
+	 * @param url
+	 *            The requested URL
+	 * @param length
+	 *            The URL length to be considered
+	 * @param bounds
+	 *            The array to record the URL variables values bounds
+	 * @return The {@link Route} for the given URL, or <code>null</code> if there's no dynamic URL
+	 *         for it.
+	 */
+	protected Route findDynamic(String url, int length, int[] bounds) {
+		int start = (length > 0 && url.charAt(0) == '/') ? 1 : 0;
+		return this.dynamicURLs.find(url, start, length, bounds, 0);
+	}
+
+	/**
+	 * Finds the route for the given URL, either static or dynamic, without recording its variables
+	 * values.
+	 * 
+	 * @return The {@link Route} for the given URL, or <code>null</code> if there's no route for it.
+	 */
+	protected Route find(String url, int length) {
+		Route route = this.findStatic(url, length);
+		return (route != null) ? route : this.findDynamic(url, length, new int[2 * this.maxVariables]);
+	}
+
+	/**
+	 * @return The allowed methods table. For the allowed methods table itself, it returns itself.
+	 */
+	protected RouteTable allowed() {
+		return (this.allowed != null) ? this.allowed : this;
+	}
+
+	/**
+	 * @return The {@link Route} used to mark, at the not found cache, the URLs not found at this
+	 *         table.
+	 */
+	protected Route notFound() {
+		return this.notFound;
+	}
+
+	/**
+	 * @return the greatest number of variables of a dynamic URL
+	 */
+	protected int maxVariables() {
+		return this.maxVariables;
+	}
+}
@@ -16,16 +16,17 @@
  */
 package br.octahedron.cotopaxi.route;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.servlet.http.HttpServletRequest;
-import javax.xml.ws.RequestWrapper;
 
-import br.octahedron.cotopaxi.controller.Controller;
 import br.octahedron.cotopaxi.controller.ControllerDescriptor;
 import br.octahedron.util.Log;
 
@@ -40,54 +41,185 @@ public class Router {
 	/*
 	 * ** Mapping Workflow
 	 * 
-	 * First, it creates a key for the url/method pair. Then, it looks for a mapping at the
-	 * cachedURLs map. If nothing is found at cache, check for the key at the static map. If it
-	 * fails one more time, look for it the dynamicURLs map.
+	 * Routes are kept at a RouteTable per http method. First, it finds the table for the request
+	 * method. Then, it looks for a mapping at the table's static map. If nothing is found, check
+	 * for the url at the routes cache. If it fails one more time, look for it at the table's
+	 * dynamic URLs trie and, if found, caches it. Only dynamic URLs are cached, since static ones
+	 * are already found at the first lookup.
 	 * 
-	 * This dynamicURLs map consists of a regex/ModelMapping map. The search on this map is
-	 * iterative, and at worse case it can take O(n) attempts. On each attempt, the url is checked
-	 * using the regex and, if matches, return the mapped ModelMaping.
+	 * Lookups never copy the requested url: the static map and the trie literals compare chars
+	 * ignoring case over the url regions, and a trailing separator is ignored by just not
+	 * considering the url last char.
+	 * 
+	 * The dynamic URLs are compiled, when added, to a segment trie per http method. Each trie node
+	 * has its literal children and a single variable child, and the search walks the url segment
+	 * by segment, trying literal children before the variable one. This way, the search cost
+	 * depends on the url depth, not on the number of dynamic URLs.
+	 * 
+	 * Each dynamic URL is compiled to a Route, that knows its variables names, types and segment
+	 * positions. Typed variables, like {id:int}, are checked and converted while routing, and the
+	 * request attributes are set with the converted values. The variables values bounds are
+	 * recorded while walking the trie, so the parameters are set at request without splitting the
+	 * url again. Cached routes extract its parameters in a single pass over the url, using the
+	 * variables segment positions.
+	 * 
+	 * ** Route changes
+	 * 
+	 * The route tables are never changed after published. Adding routes builds a complete new set
+	 * of tables, off to the side, and publishes it with a single volatile write, so requests are
+	 * routed without locks and in-flight requests finish against the tables they started with.
+	 * Cached routes from replaced tables are ignored, since each Route knows the table it belongs
+	 * to.
 	 * 
 	 * If no ModelMapping is found for the given url/method pair, an NotFoundException is thrown.
+	 * Dynamic URLs not found are kept at a bounded not found cache, so repeated requests to unknown
+	 * URLs, usually from scanners and bots, don't walk the tries again.
+	 * 
+	 * ** Allowed methods
+	 * 
+	 * Mapping URLs are grouped by pattern when routes are compiled, and the methods allowed for
+	 * each pattern are kept at an allowed methods table, shared by all the method tables. GET
+	 * routes also answer HEAD requests, unless there's a HEAD route for the same URL. When a URL
+	 * isn't found for the request method, the allowed methods table tells if it's a not allowed
+	 * method (405) or a not found URL (404), and answers OPTIONS requests.
 	 */
 
 	public static final String NOT_FOUND_URL = "notFoundUrl";
 	public static final String NOT_FOUND_METHOD = "notFoundMethod";
 
-	private static final String METHOD_SEPARATOR = "%%";
 	private static final String SEPARATOR = "/";
+	private static final char SEPARATOR_CHAR = '/';
 	// Log
 	private static final Log log = new Log(Router.class);
-	/* pattern for non static urls */
-	private static final Pattern nonStaticPattern = Pattern.compile("^((/[a-zA-Z_0-9]+)*(/\\{[a-zA-Z_0-9]+\\})+(/[a-zA-Z_0-9]+)*)+/?$");
-	/* pattern for variables */
-	private static final Pattern variablePattern = Pattern.compile("\\{[a-zA-Z_0-9]+\\}");
-	private static final String acceptableVariableValues = "[a-zA-Z_0-9@%.-]+";
-	
-
-	// Cached URLS vs ControllerDescriptor
-	private Map<String, ControllerDescriptor> cachedURLs = new HashMap<String, ControllerDescriptor>();
-	// static URLS vs ControllerDescriptor
-	private Map<String, ControllerDescriptor> staticURLs = new HashMap<String, ControllerDescriptor>();
-	// dynamic URLS vs ControllerDescriptor
-	private Map<String, ControllerDescriptor> dynamicURLs = new HashMap<String, ControllerDescriptor>();
-	// reverse Map: ControllerDescriptor vs. Mapping URL
-	private Map<ControllerDescriptor, String> urlRoute = new HashMap<ControllerDescriptor, String>();
+	// Cached dynamic URLS vs ControllerDescriptor
+	private volatile RouteCache cachedURLs = new BoundedRouteCache();
+	// Cached not found URLs
+	private volatile RouteCache notFoundURLs = new BoundedRouteCache();
+	// HTTP method vs routes - the published tables are never changed
+	private volatile EnumMap<HttpMethod, RouteTable> routes = new EnumMap<HttpMethod, RouteTable>(HttpMethod.class);
+	// the published routes descriptors, used to build new tables
+	private volatile List<ControllerDescriptor> descriptors = Collections.emptyList();
+
+	/**
+	 * Sets the {@link RouteCache} to be used to cache resolved dynamic routes.
+	 */
+	public void setRouteCache(RouteCache routeCache) {
+		this.cachedURLs = routeCache;
+	}
+
+	/**
+	 * @return The {@link RouteCache} used to cache resolved dynamic routes.
+	 */
+	public RouteCache getRouteCache() {
+		return this.cachedURLs;
+	}
+
+	/**
+	 * Sets the {@link RouteCache} to be used to cache not found URLs. If <code>null</code>, not
+	 * found URLs aren't cached.
+	 * 
+	 * It should be a distinct instance from the resolved routes' cache, so their counters aren't
+	 * mixed. Its hits are the lookups answered as not found, or with the allowed methods, without
+	 * walking the routes' tries, and its misses are the lookups for URLs not known as not found.
+	 */
+	public void setNotFoundCache(RouteCache notFoundCache) {
+		this.notFoundURLs = notFoundCache;
+	}
+
+	/**
+	 * @return The {@link RouteCache} used to cache not found URLs, or <code>null</code> if not
+	 *         found URLs aren't cached.
+	 */
+	public RouteCache getNotFoundCache() {
+		return this.notFoundURLs;
+	}
+
+	/**
+	 * @return All the routes' {@link ControllerDescriptor}s
+	 */
+	public List<ControllerDescriptor> getRoutes() {
+		return this.descriptors;
+	}
 
 	/**
 	 * Adds a new route
 	 */
 	public void addRoute(ControllerDescriptor controllerDesc) {
-		String url = controllerDesc.getUrl();
-		String method = controllerDesc.getHttpMethod();
-		log.info("Adding route for %s %s", method, url);
-		this.urlRoute.put(controllerDesc, url);
-		if (this.isStaticURL(url)) {
-			this.staticURLs.put(this.getURLKey(url, method), controllerDesc);
-		} else {
-			// replace all the {var} to create a url regex and adds it to the dynamicUrlsMap
-			String urlRegex = this.generateRegex(url);
-			this.dynamicURLs.put(this.getURLKey(urlRegex, method), controllerDesc);
+		this.addRoutes(Collections.singletonList(controllerDesc));
+	}
+
+	/**
+	 * Adds the given routes. The routes are published at once, after all of them be compiled.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If some route is invalid. In such case, no route is added.
+	 */
+	public synchronized void addRoutes(Collection<ControllerDescriptor> controllerDescs) {
+		List<ControllerDescriptor> all = new ArrayList<ControllerDescriptor>(this.descriptors);
+		for (ControllerDescriptor controllerDesc : controllerDescs) {
+			log.info("Adding route for %s %s", controllerDesc.getHttpMethod(), controllerDesc.getUrl());
+			all.add(controllerDesc);
+		}
+		this.publish(all);
+	}
+
+	/**
+	 * Replaces all the routes by the given ones. The new routes are compiled off to the side and
+	 * published at once, so requests being routed concurrently will use either the old or the new
+	 * routes, never a mix of them or an empty router.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If some route is invalid. In such case, the current routes are kept.
+	 */
+	public synchronized void setRoutes(Collection<ControllerDescriptor> controllerDescs) {
+		List<ControllerDescriptor> all = new ArrayList<ControllerDescriptor>(controllerDescs.size());
+		for (ControllerDescriptor controllerDesc : controllerDescs) {
+			log.info("Setting route for %s %s", controllerDesc.getHttpMethod(), controllerDesc.getUrl());
+			all.add(controllerDesc);
+		}
+		this.publish(all);
+	}
+
+	/**
+	 * Builds the route tables for the given routes and publishes them.
+	 */
+	private void publish(List<ControllerDescriptor> controllerDescs) {
+		Map<String, Mapping> mappings = new LinkedHashMap<String, Mapping>();
+		for (ControllerDescriptor controllerDesc : controllerDescs) {
+			HttpMethod method = HttpMethod.of(controllerDesc.getHttpMethod());
+			if (method == null) {
+				throw new IllegalArgumentException("Unknown http method: " + controllerDesc.getHttpMethod());
+			}
+			String[] segments = this.getSegments(controllerDesc.getUrl());
+			String pattern = this.getPattern(segments);
+			Mapping mapping = mappings.get(pattern);
+			if (mapping == null) {
+				mapping = new Mapping(segments);
+				mappings.put(pattern, mapping);
+			}
+			mapping.add(method, controllerDesc);
+		}
+		// builds the allowed methods table and a table per method
+		RouteTable allowed = new RouteTable(null);
+		EnumMap<HttpMethod, RouteTable> tables = new EnumMap<HttpMethod, RouteTable>(HttpMethod.class);
+		for (HttpMethod method : HttpMethod.values()) {
+			tables.put(method, new RouteTable(allowed));
+		}
+		for (Mapping mapping : mappings.values()) {
+			ControllerDescriptor any = null;
+			for (Entry<HttpMethod, ControllerDescriptor> entry : mapping.controllers.entrySet()) {
+				tables.get(entry.getKey()).add(entry.getValue(), mapping.segments, null);
+				any = entry.getValue();
+			}
+			allowed.add(any, mapping.segments, mapping.allowedMethods());
+		}
+		this.routes = tables;
+		this.descriptors = Collections.unmodifiableList(controllerDescs);
+		// old routes are ignored anyway, it just releases them
+		this.cachedURLs.clear();
+		RouteCache notFoundCache = this.notFoundURLs;
+		if (notFoundCache != null) {
+			notFoundCache.clear();
 		}
 	}
 
@@ -99,123 +231,126 @@ public class Router {
 	 *             If there's controller for the given url
 	 */
 	public ControllerDescriptor route(HttpServletRequest request) throws NotFoundExeption {
-		String url = request.getRequestURI().toLowerCase();
-		String method = request.getMethod().toLowerCase();
-		ControllerDescriptor result = this.findController(url, method);
-		log.debug("Controller for %s %s founded: %s", method, url, result.getControllerName());
-		
-		String routeURL = this.urlRoute.get(result);
-		if (!this.isStaticURL(routeURL)) {
-			this.extractURLParameters(routeURL, request);
+		String url = request.getRequestURI();
+		String methodName = request.getMethod();
+		ControllerDescriptor result = this.find(url, methodName, request);
+		if (result == null) {
+			throw new NotFoundExeption(url, methodName);
 		}
-
 		return result;
 	}
 
 	/**
-	 * Maps the given URL/Method to a {@link Controller} class
+	 * Gets the methods allowed for the requested URL, as the Allow header value. The allowed
+	 * methods for each mapping URL are computed when routes are added.
 	 * 
-	 * @param url
-	 *            the URL
-	 * @param method
-	 *            the {@link HTTPMethod}.
-	 * @return The {@link Controller} class to handler the request
-	 * @throws PageNotFoundExeption
-	 *             If no {@link MetadataHandler} is found for the given URL/{@link HTTPMethod} pair
+	 * @return The methods allowed for the requested URL, e.g.: "GET, HEAD, POST, OPTIONS", or
+	 *         <code>null</code> if there's no route for the requested URL, for any method.
 	 */
-	protected ControllerDescriptor findController(String url, String method) throws NotFoundExeption {
-		ControllerDescriptor result;
-
-		String key = this.getURLKey(url, method);
-		if (this.cachedURLs.containsKey(key)) {
-			result = this.cachedURLs.get(key);
-		} else if (this.staticURLs.containsKey(key)) {
-			result = this.staticURLs.get(key);
-		} else {
-			result = this.findDynamicURL(key);
-		}
-
-		// cache result and return
-		if (result != null) {
-			this.cachedURLs.put(key, result);
-			return result;
-		} else {
-			throw new NotFoundExeption(url, method);
+	public String allowedMethods(HttpServletRequest request) {
+		String url = request.getRequestURI();
+		HttpMethod method = HttpMethod.of(request.getMethod());
+		// all tables share the same allowed methods table
+		RouteTable allowed = this.routes.get(HttpMethod.GET).allowed();
+		RouteCache notFoundCache = this.notFoundURLs;
+		if (method != null && notFoundCache != null) {
+			Route cached = notFoundCache.get(method, url);
+			if (cached != null && cached.belongsTo(allowed)) {
+				return cached.allowedMethods();
+			}
 		}
+		Route route = allowed.find(url, this.length(url));
+		return (route != null) ? route.allowedMethods() : null;
 	}
 
 	/**
-	 * Extracts the dynamic request parameters on the URL. It checks the mapping URL pattern and the
-	 * accessed URL and maps the parameters, setting it on the {@link RequestWrapper}.
+	 * Finds the controller for a request. Unlike {@link Router#route(HttpServletRequest)}, it
+	 * signals a not found URL returning <code>null</code>.
+	 * 
+	 * @return The {@link ControllerDescriptor} that describes the controller for the given request,
+	 *         or <code>null</code> if there's no controller for it.
 	 */
-	private void extractURLParameters(String routeURL, HttpServletRequest request) {
-		String[] mappingURLTokens = routeURL.split(SEPARATOR);
-		String[] requestURLTokens = request.getRequestURI().split(SEPARATOR);
-		for (int i = 1; i < mappingURLTokens.length; i++) {
-			Matcher m = variablePattern.matcher(mappingURLTokens[i]);
-			if (m.matches()) {
-				String attName = mappingURLTokens[i];
-				attName = attName.substring(1, attName.length() - 1);
-				String value = requestURLTokens[i];
-				request.setAttribute(attName, value);
-			}
-		}
+	public ControllerDescriptor find(HttpServletRequest request) {
+		return this.find(request.getRequestURI(), request.getMethod(), request);
 	}
 
 	/**
-	 * Finds the Controller for a given URL, if this URL represents a dynamic URL.
-	 * 
-	 * @param key
-	 *            the URL key, generated using the getURLKey
-	 * 
-	 * @return The {@link Controller} class for the given URL, if exists, or <code>null</code>
-	 *         otherwise.
+	 * Finds the controller for the given url/method pair, setting the URL variables at the given
+	 * request.
 	 */
-	private ControllerDescriptor findDynamicURL(String key) {
-		ControllerDescriptor result = null;
-		for (Entry<String, ControllerDescriptor> entry : this.dynamicURLs.entrySet()) {
-			if (key.matches(entry.getKey())) {
-				result = entry.getValue();
-				break;
+	private ControllerDescriptor find(String url, String methodName, HttpServletRequest request) {
+		HttpMethod method = HttpMethod.of(methodName);
+		if (method == null) {
+			return null;
+		}
+		RouteTable table = this.routes.get(method);
+		int length = this.length(url);
+		Route route = table.findStatic(url, length);
+		if (route == null) {
+			RouteCache cache = this.cachedURLs;
+			route = cache.get(method, url);
+			if (route != null && route.belongsTo(table)) {
+				route.extract(url, request);
+			} else {
+				RouteCache notFoundCache = this.notFoundURLs;
+				if (notFoundCache != null) {
+					Route notFound = notFoundCache.get(method, url);
+					if (notFound != null && notFound.belongsTo(table.allowed())) {
+						return null;
+					}
+				}
+				int[] bounds = new int[2 * table.maxVariables()];
+				route = table.findDynamic(url, length, bounds);
+				if (route == null) {
+					if (notFoundCache != null) {
+						// caches the allowed methods route, to answer the allowed methods as well
+						Route allowedRoute = table.allowed().find(url, length);
+						notFoundCache.put(method, url, (allowedRoute != null) ? allowedRoute : table.allowed().notFound());
+					}
+					return null;
+				}
+				// cache dynamic result
+				cache.put(method, url, route);
+				route.bind(url, bounds, request);
 			}
 		}
+		ControllerDescriptor result = route.getControllerDescriptor();
+		log.debug("Controller for %s %s founded: %s", method, url, result.getControllerName());
 		return result;
 	}
 
 	/**
-	 * Gets the key for a given URL and method. This key is used by the maps.
+	 * Gets the given URL length, without the trailing separator.
 	 */
-	private String getURLKey(String url, String method) {
-		if (url.equals("")) {
-			url = "/";
-		}
-		if (url.length() > 1 && url.endsWith("/")) {
-			url = url.substring(0, url.length() - 1);
-		}
-		return url + METHOD_SEPARATOR + method;
+	private int length(String url) {
+		int length = url.length();
+		return (length > 1 && url.charAt(length - 1) == SEPARATOR_CHAR) ? length - 1 : length;
 	}
 
 	/**
-	 * Generates a regex to recognize the given dynamic URL.
-	 * 
-	 * @param url
-	 *            the dynamicUrl to be transformed to a regex.
-	 * @return a regex for the given URL.
+	 * Gets the given mapping URL segments, ignoring the leading and trailing separators.
 	 */
-	private String generateRegex(String url) {
-		return variablePattern.matcher(url).replaceAll(Matcher.quoteReplacement(acceptableVariableValues));
+	private String[] getSegments(String url) {
+		int start = url.startsWith(SEPARATOR) ? 1 : 0;
+		int end = (url.length() > start && url.endsWith(SEPARATOR)) ? url.length() - 1 : url.length();
+		return (start < end) ? url.substring(start, end).split(SEPARATOR) : new String[0];
 	}
 
 	/**
-	 * Checks if the given Mapping URL is a static URL. This not check if a requested URL is static
-	 * or not, only URLs from Mappings.
-	 * 
-	 * @param url
-	 *            the URL to be checked.
-	 * @return <code>true</code> if the URL is static, <code>false</code> otherwise
+	 * Gets the pattern for the given mapping URL segments. Mapping URLs with the same pattern are
+	 * the same URL for different methods. The variables names are ignored, but not their types.
 	 */
-	private boolean isStaticURL(String url) {
-		return !nonStaticPattern.matcher(url).matches();
+	private String getPattern(String[] segments) {
+		StringBuilder pattern = new StringBuilder();
+		for (String segment : segments) {
+			pattern.append(SEPARATOR);
+			if (VariableType.isVariable(segment)) {
+				pattern.append("{:").append(VariableType.variableType(segment)).append('}');
+			} else {
+				pattern.append(segment.toLowerCase());
+			}
+		}
+		return pattern.toString();
 	}
 
 	/**
@@ -223,10 +358,49 @@ public class Router {
 	 * 
 	 * Calling this method can make application stop works properly.
 	 */
-	public void forceReset() {
-		this.cachedURLs.clear();
-		this.staticURLs.clear();
-		this.dynamicURLs.clear();
-		this.urlRoute.clear();
+	public synchronized void forceReset() {
+		this.publish(new ArrayList<ControllerDescriptor>());
+	}
+
+	/**
+	 * The routes for a mapping URL pattern
+	 */
+	private static class Mapping {
+		private final String[] segments;
+		private final EnumMap<HttpMethod, ControllerDescriptor> controllers = new EnumMap<HttpMethod, ControllerDescriptor>(HttpMethod.class);
+		private boolean head = false;
+
+		private Mapping(String[] segments) {
+			this.segments = segments;
+		}
+
+		/**
+		 * Adds a route for the given method. GET routes also answer HEAD requests, if there's no
+		 * HEAD route for the same URL.
+		 */
+		private void add(HttpMethod method, ControllerDescriptor controllerDesc) {
+			this.controllers.put(method, controllerDesc);
+			if (method == HttpMethod.HEAD) {
+				this.head = true;
+			} else if (method == HttpMethod.GET && !this.head) {
+				this.controllers.put(HttpMethod.HEAD, controllerDesc);
+			}
+		}
+
+		/**
+		 * @return The Allow header value for this mapping. OPTIONS is always allowed.
+		 */
+		private String allowedMethods() {
+			StringBuilder allow = new StringBuilder();
+			for (HttpMethod method : HttpMethod.values()) {
+				if (this.controllers.containsKey(method) || method == HttpMethod.OPTIONS) {
+					if (allow.length() > 0) {
+						allow.append(", ");
+					}
+					allow.append(method);
+				}
+			}
+			return allow.toString();
+		}
 	}
 }
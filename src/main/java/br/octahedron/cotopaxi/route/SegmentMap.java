@@ -0,0 +1,136 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.route;
+
+/**
+ * A case insensitive map from URL paths or segments to values. Lookups are made over a region of
+ * the requested URL, so it isn't necessary to create a lowercased copy or a substring of the URL
+ * to find a value.
+ * 
+ * It uses open addressing with linear probing, and keys are stored lowercased.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+class SegmentMap<V> {
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	private String[] keys = new String[INITIAL_CAPACITY];
+	private Object[] values = new Object[INITIAL_CAPACITY];
+	private int size = 0;
+
+	/**
+	 * Associates the given value to the given key. If the map already contains a value for the
+	 * key, the old value is replaced.
+	 */
+	protected void put(String key, V value) {
+		if ((this.size + 1) * 2 > this.keys.length) {
+			this.resize();
+		}
+		String lowerKey = lower(key);
+		int i = this.indexOf(lowerKey, 0, lowerKey.length());
+		if (this.keys[i] == null) {
+			this.keys[i] = lowerKey;
+			this.size++;
+		}
+		this.values[i] = value;
+	}
+
+	/**
+	 * Gets the value for the key formed by the chars between the given positions of the given
+	 * {@link CharSequence}, ignoring case.
+	 * 
+	 * @return The value for the given key, or <code>null</code> if there's no such key.
+	 */
+	@SuppressWarnings("unchecked")
+	protected V get(CharSequence chars, int start, int end) {
+		return (V) this.values[this.indexOf(chars, start, end)];
+	}
+
+	/**
+	 * @return This map's size
+	 */
+	protected int size() {
+		return this.size;
+	}
+
+	/**
+	 * Gets the index for the given key, it means, the index where the key is stored or the first
+	 * free index for it.
+	 */
+	private int indexOf(CharSequence chars, int start, int end) {
+		int mask = this.keys.length - 1;
+		int i = hash(chars, start, end) & mask;
+		while (this.keys[i] != null && !matches(this.keys[i], chars, start, end)) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	/**
+	 * Doubles this map's capacity
+	 */
+	private void resize() {
+		String[] oldKeys = this.keys;
+		Object[] oldValues = this.values;
+		this.keys = new String[oldKeys.length * 2];
+		this.values = new Object[oldKeys.length * 2];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != null) {
+				int index = this.indexOf(oldKeys[i], 0, oldKeys[i].length());
+				this.keys[index] = oldKeys[i];
+				this.values[index] = oldValues[i];
+			}
+		}
+	}
+
+	private static boolean matches(String key, CharSequence chars, int start, int end) {
+		if (key.length() != end - start) {
+			return false;
+		}
+		for (int i = 0; i < key.length(); i++) {
+			if (key.charAt(i) != lower(chars.charAt(start + i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int hash(CharSequence chars, int start, int end) {
+		int h = 0;
+		for (int i = start; i < end; i++) {
+			h = 31 * h + lower(chars.charAt(i));
+		}
+		return h ^ (h >>> 16);
+	}
+
+	private static String lower(String key) {
+		char[] chars = new char[key.length()];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = lower(key.charAt(i));
+		}
+		return new String(chars);
+	}
+
+	private static char lower(char c) {
+		if (c < 128) {
+			return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+		} else {
+			return Character.toLowerCase(c);
+		}
+	}
+}
@@ -0,0 +1,213 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.route;
+
+/**
+ * The types for mapping URL variables. A variable type is declared at the mapping URL after the
+ * variable name, e.g.: <i>/user/{id:int}</i>, <i>/tag/{slug:alpha}</i>. Variables without type
+ * are {@link VariableType#STRING} variables.
+ * 
+ * Each type checks if a URL segment is an acceptable value without regexes, and converts the
+ * value to the type, so it's parsed only once, while routing. The declaration order is also the
+ * precedence order used when many typed variables are mapped to the same URL segment.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public enum VariableType {
+
+	/**
+	 * An {@link Integer} value
+	 */
+	INT {
+		@Override
+		protected boolean accepts(String url, int start, int end) {
+			return isNumber(url, start, end, Integer.MIN_VALUE, Integer.MAX_VALUE);
+		}
+
+		@Override
+		protected Object convert(String value) {
+			return Integer.valueOf(value);
+		}
+	},
+	/**
+	 * A {@link Long} value
+	 */
+	LONG {
+		@Override
+		protected boolean accepts(String url, int start, int end) {
+			return isNumber(url, start, end, Long.MIN_VALUE, Long.MAX_VALUE);
+		}
+
+		@Override
+		protected Object convert(String value) {
+			return Long.valueOf(value);
+		}
+	},
+	/**
+	 * An {@link java.util.UUID} value, in its canonical form
+	 */
+	UUID {
+		@Override
+		protected boolean accepts(String url, int start, int end) {
+			if (end - start != 36) {
+				return false;
+			}
+			for (int i = 0; i < 36; i++) {
+				char c = url.charAt(start + i);
+				if (i == 8 || i == 13 || i == 18 || i == 23) {
+					if (c != '-') {
+						return false;
+					}
+				} else if (!((c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F'))) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		protected Object convert(String value) {
+			return java.util.UUID.fromString(value);
+		}
+	},
+	/**
+	 * A {@link String} value with letters only
+	 */
+	ALPHA {
+		@Override
+		protected boolean accepts(String url, int start, int end) {
+			if (start >= end) {
+				return false;
+			}
+			for (int i = start; i < end; i++) {
+				char c = url.charAt(i);
+				if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) {
+					return false;
+				}
+			}
+			return true;
+		}
+	},
+	/**
+	 * A {@link String} value. The acceptable chars are letters, digits and '_', '@', '%', '.', '-'.
+	 */
+	STRING {
+		@Override
+		protected boolean accepts(String url, int start, int end) {
+			if (start >= end) {
+				return false;
+			}
+			for (int i = start; i < end; i++) {
+				char c = url.charAt(i);
+				if (!isWordChar(c) && c != '@' && c != '%' && c != '.' && c != '-') {
+					return false;
+				}
+			}
+			return true;
+		}
+	};
+
+	private static final char TYPE_SEPARATOR = ':';
+
+	/**
+	 * Checks if the chars between the given positions are an acceptable value for this type.
+	 */
+	protected abstract boolean accepts(String url, int start, int end);
+
+	/**
+	 * Converts an accepted value to this type. By default, it's the value itself.
+	 */
+	protected Object convert(String value) {
+		return value;
+	}
+
+	/**
+	 * Checks if the given mapping URL segment is a variable, it means, a segment like "{name}" or
+	 * "{name:type}".
+	 */
+	protected static boolean isVariable(String segment) {
+		int last = segment.length() - 1;
+		if (last < 2 || segment.charAt(0) != '{' || segment.charAt(last) != '}') {
+			return false;
+		}
+		int separator = segment.indexOf(TYPE_SEPARATOR);
+		int nameEnd = (separator < 0) ? last : separator;
+		if (nameEnd == 1 || nameEnd == last - 1) {
+			return false;
+		}
+		for (int i = 1; i < last; i++) {
+			if (i != separator && !isWordChar(segment.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the name of the given variable segment.
+	 */
+	protected static String variableName(String segment) {
+		int separator = segment.indexOf(TYPE_SEPARATOR);
+		return segment.substring(1, (separator < 0) ? segment.length() - 1 : separator);
+	}
+
+	/**
+	 * Gets the {@link VariableType} of the given variable segment.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             If the declared type isn't a known type.
+	 */
+	protected static VariableType variableType(String segment) {
+		int separator = segment.indexOf(TYPE_SEPARATOR);
+		if (separator < 0) {
+			return STRING;
+		}
+		String type = segment.substring(separator + 1, segment.length() - 1);
+		try {
+			return VariableType.valueOf(type.toUpperCase());
+		} catch (IllegalArgumentException ex) {
+			throw new IllegalArgumentException("Unknown URL variable type: " + type);
+		}
+	}
+
+	private static boolean isWordChar(char c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+	}
+
+	/**
+	 * Checks if the chars between the given positions are a decimal number between the given
+	 * limits.
+	 */
+	private static boolean isNumber(String url, int start, int end, long min, long max) {
+		boolean negative = start < end && url.charAt(start) == '-';
+		int i = negative ? start + 1 : start;
+		if (i >= end) {
+			return false;
+		}
+		// accumulates negatively, as the negative range is greater than positive one
+		long limit = negative ? min : -max;
+		long result = 0;
+		for (; i < end; i++) {
+			int digit = url.charAt(i) - '0';
+			if (digit < 0 || digit > 9 || result < (limit + digit) / 10) {
+				return false;
+			}
+			result = result * 10 - digit;
+		}
+		return true;
+	}
+}
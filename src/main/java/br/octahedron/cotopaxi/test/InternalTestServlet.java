@@ -24,6 +24,7 @@ import javax.servlet.http.HttpServletResponse;
 import br.octahedron.cotopaxi.CotopaxiProperty.RunningMode;
 import br.octahedron.cotopaxi.CotopaxiServlet;
 import br.octahedron.cotopaxi.controller.ControllerResponse;
+import br.octahedron.cotopaxi.interceptor.InterceptorManager;
 import br.octahedron.cotopaxi.view.response.TemplateResponse;
 
 /**
@@ -57,16 +58,18 @@ class InternalTestServlet extends CotopaxiServlet {
 	 * (non-Javadoc)
 	 * 
 	 * @see
-	 * br.octahedron.cotopaxi.CotopaxiServlet#processResponse(javax.servlet.http.HttpServletResponse
-	 * , br.octahedron.cotopaxi.controller.ControllerResponse)
+	 * br.octahedron.cotopaxi.CotopaxiServlet#processResponse(br.octahedron.cotopaxi.interceptor
+	 * .InterceptorManager, javax.servlet.http.HttpServletResponse,
+	 * br.octahedron.cotopaxi.controller.ControllerResponse)
 	 */
 	@Override
-	protected void processResponse(HttpServletResponse response, ControllerResponse controllerResponse) throws IOException, ServletException {
+	protected void processResponse(InterceptorManager interceptor, HttpServletResponse response, ControllerResponse controllerResponse)
+			throws IOException, ServletException {
 		this.lastResponse = controllerResponse;
 		if (controllerResponse instanceof TemplateResponse) {
-			this.interceptor.preRender((TemplateResponse) controllerResponse);
+			interceptor.preRender((TemplateResponse) controllerResponse);
 		}
-		this.interceptor.finish();
+		interceptor.finish();
 	}
 
 	/**
@@ -0,0 +1,41 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.render;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * An output that accepts text already encoded, besides characters. Template renders can write the
+ * templates' static text, encoded once, directly to such outputs, instead of encoding it on every
+ * render.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public interface EncodedOutput {
+
+	/**
+	 * Gets the charset the output is encoded with. Encoded text is only accepted if it uses the
+	 * same charset.
+	 */
+	public abstract Charset charset();
+
+	/**
+	 * Writes the given text, encoded with the output charset.
+	 */
+	public abstract void writeEncoded(byte[] bytes) throws IOException;
+}
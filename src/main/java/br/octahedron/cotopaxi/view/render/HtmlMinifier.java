@@ -0,0 +1,157 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.render;
+
+/**
+ * Minifies the static HTML text of a template: collapses whitespace runs and strips HTML comments.
+ * The content of <code>pre</code>, <code>textarea</code> and <code>script</code> elements, the
+ * tags themselves, with their attributes, and conditional comments, are kept as is.
+ * 
+ * A template's text is split by its dynamic content, so a minifier should process all the text
+ * of a template, in order. It keeps track if the text is inside a tag, or inside an element that
+ * shouldn't be minified.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+final class HtmlMinifier {
+
+	private static final String[] RAW_ELEMENTS = { "pre", "textarea", "script" };
+	private static final String COMMENT_START = "<!--";
+	private static final String COMMENT_END = "-->";
+
+	private String rawElement = null;
+	private boolean inTag = false;
+	private char quote = 0;
+
+	/**
+	 * Minifies the given text
+	 */
+	String minify(String text) {
+		StringBuilder out = new StringBuilder(text.length());
+		int length = text.length();
+		int i = 0;
+		while (i < length) {
+			if (this.rawElement != null) {
+				int end = indexOfIgnoreCase(text, "</" + this.rawElement, i);
+				if (end < 0) {
+					out.append(text, i, length);
+					break;
+				}
+				out.append(text, i, end);
+				this.rawElement = null;
+				this.inTag = false;
+				this.quote = 0;
+				i = end;
+			}
+			if (this.inTag) {
+				i = this.copyTag(text, i, out);
+				continue;
+			}
+			char c = text.charAt(i);
+			if (c == '<' && text.startsWith(COMMENT_START, i)) {
+				int end = text.indexOf(COMMENT_END, i + COMMENT_START.length());
+				if (end < 0) {
+					// comments split by dynamic content are kept
+					out.append(text, i, length);
+					break;
+				}
+				end += COMMENT_END.length();
+				if (text.startsWith("[if", i + COMMENT_START.length())) {
+					// conditional comments are kept
+					out.append(text, i, end);
+				}
+				i = end;
+			} else if (c == '<') {
+				this.rawElement = rawElement(text, i + 1);
+				out.append(c);
+				i++;
+				this.inTag = isTagStart(text, i);
+			} else if (Character.isWhitespace(c)) {
+				boolean newLine = false;
+				while (i < length && Character.isWhitespace(text.charAt(i))) {
+					newLine |= (text.charAt(i) == '\n');
+					i++;
+				}
+				out.append(newLine ? '\n' : ' ');
+			} else {
+				out.append(c);
+				i++;
+			}
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Copies the tag as is, up to its end, keeping track of quoted attribute values.
+	 * 
+	 * @return the position after the copied text
+	 */
+	private int copyTag(String text, int i, StringBuilder out) {
+		int length = text.length();
+		while (i < length) {
+			char c = text.charAt(i++);
+			out.append(c);
+			if (this.quote != 0) {
+				if (c == this.quote) {
+					this.quote = 0;
+				}
+			} else if (c == '"' || c == '\'') {
+				this.quote = c;
+			} else if (c == '>') {
+				this.inTag = false;
+				break;
+			}
+		}
+		return i;
+	}
+
+	/**
+	 * Checks if a tag starts at the given position, right after a <code>&lt;</code>.
+	 */
+	private static boolean isTagStart(String text, int i) {
+		if (i >= text.length()) {
+			return false;
+		}
+		char c = text.charAt(i);
+		return Character.isLetter(c) || c == '/' || c == '!';
+	}
+
+	/**
+	 * Gets the name of the element, that shouldn't be minified, starting at the given position.
+	 * 
+	 * @return the element name, or <code>null</code> if it isn't an element to be kept.
+	 */
+	private static String rawElement(String text, int start) {
+		for (String element : RAW_ELEMENTS) {
+			int end = start + element.length();
+			if (text.regionMatches(true, start, element, 0, element.length())
+					&& (end == text.length() || !Character.isLetterOrDigit(text.charAt(end)))) {
+				return element;
+			}
+		}
+		return null;
+	}
+
+	private static int indexOfIgnoreCase(String text, String str, int from) {
+		for (int i = from; i <= text.length() - str.length(); i++) {
+			if (text.regionMatches(true, i, str, 0, str.length())) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
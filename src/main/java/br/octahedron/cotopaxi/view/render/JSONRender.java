@@ -16,16 +16,19 @@
  */
 package br.octahedron.cotopaxi.view.render;
 
+import static br.octahedron.cotopaxi.CotopaxiProperty.snapshot;
+
 import java.io.IOException;
 import java.io.Writer;
 
 import br.octahedron.util.Log;
-import flexjson.JSONSerializer;
 
 /**
  * JSONRender is responsible for rendering java objects into JSON format.
  * 
- * Generally used on controllers to render the attributes of request.
+ * Generally used on controllers to render the attributes of request. The objects are written
+ * straight to the writer, as they're walked, and pretty printed according to
+ * {@link br.octahedron.cotopaxi.CotopaxiProperty#JSON_PRETTY_PRINT}.
  * 
  * @author Vítor Avelino - vitoravelino@octahedron.com.br
  * 
@@ -34,9 +37,27 @@ public class JSONRender {
 
 	private static final Log log = new Log(JSONRender.class);
 
+	private final Boolean prettyPrint;
+
+	/**
+	 * Creates a JSONRender that pretty prints the JSON according to the application running mode.
+	 */
+	public JSONRender() {
+		this.prettyPrint = null;
+	}
+
+	/**
+	 * Creates a JSONRender that pretty prints the JSON, or not, regardless the application running
+	 * mode.
+	 */
+	public JSONRender(boolean prettyPrint) {
+		this.prettyPrint = prettyPrint;
+	}
+
 	public void render(Object object, Writer writer) {
+		boolean pretty = (this.prettyPrint != null) ? this.prettyPrint : snapshot().jsonPrettyPrint();
 		try {
-			writer.write(new JSONSerializer().prettyPrint(true).deepSerialize(object));
+			new JSONWriter(writer, pretty).write(object);
 			log.debug("Written json in response writer");
 		} catch (IOException ex) {
 			log.error(ex, "Impossible to parse objects into json format to be used on writer");
@@ -0,0 +1,363 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.render;
+
+import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Writes objects in JSON format straight to a {@link Writer}, walking the whole object graph.
+ * 
+ * The output is compatible with flexjson's <code>deepSerialize</code>: beans are written as
+ * objects with their readable properties and public fields, sorted by name, plus a
+ * <code>class</code> property; {@link Map}s are written as objects, {@link Iterable}s and arrays
+ * as arrays, {@link Date}s as milliseconds and {@link Enum}s by their names. Values that would
+ * lead to a cycle are skipped, and non finite numbers are written as <code>null</code>.
+ * 
+ * The properties of each bean class are resolved once, to a {@link Plan} shared by all writers,
+ * with their names already escaped.
+ * 
+ * A JSONWriter isn't thread safe, and should be used to write a single object.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+final class JSONWriter {
+
+	private static final ConcurrentMap<Class<?>, Plan> plans = new ConcurrentHashMap<Class<?>, Plan>();
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	private static final String INDENT = "    ";
+
+	private final Writer out;
+	private final boolean prettyPrint;
+	private final Map<Object, Object> path = new IdentityHashMap<Object, Object>();
+	private int depth = 0;
+
+	JSONWriter(Writer out, boolean prettyPrint) {
+		this.out = out;
+		this.prettyPrint = prettyPrint;
+	}
+
+	/**
+	 * Writes the given object
+	 */
+	void write(Object value) throws IOException {
+		if (value == null) {
+			this.out.write("null");
+		} else if (value instanceof String) {
+			this.writeString((String) value);
+		} else if (value instanceof Number) {
+			this.writeNumber((Number) value);
+		} else if (value instanceof Boolean) {
+			this.out.write(value.toString());
+		} else if (value instanceof Character) {
+			this.writeString(value.toString());
+		} else if (value instanceof Enum<?>) {
+			this.writeString(((Enum<?>) value).name());
+		} else if (value instanceof Date) {
+			this.out.write(Long.toString(((Date) value).getTime()));
+		} else if (value instanceof Class<?>) {
+			this.writeString(((Class<?>) value).getName());
+		} else {
+			this.path.put(value, value);
+			try {
+				if (value instanceof Map<?, ?>) {
+					this.writeMap((Map<?, ?>) value);
+				} else if (value instanceof Iterable<?>) {
+					this.writeIterable((Iterable<?>) value);
+				} else if (value.getClass().isArray()) {
+					this.writeArray(value);
+				} else {
+					this.writeBean(value);
+				}
+			} finally {
+				this.path.remove(value);
+			}
+		}
+	}
+
+	private void writeMap(Map<?, ?> map) throws IOException {
+		this.out.write('{');
+		boolean first = true;
+		for (Entry<?, ?> entry : map.entrySet()) {
+			Object value = entry.getValue();
+			if (!this.isCycle(value)) {
+				this.separator(first);
+				this.writeString(String.valueOf(entry.getKey()));
+				this.colon();
+				this.write(value);
+				first = false;
+			}
+		}
+		this.close('}', first);
+	}
+
+	private void writeIterable(Iterable<?> iterable) throws IOException {
+		this.out.write('[');
+		boolean first = true;
+		for (Object value : iterable) {
+			if (!this.isCycle(value)) {
+				this.separator(first);
+				this.write(value);
+				first = false;
+			}
+		}
+		this.close(']', first);
+	}
+
+	private void writeArray(Object array) throws IOException {
+		this.out.write('[');
+		boolean first = true;
+		int length = Array.getLength(array);
+		for (int i = 0; i < length; i++) {
+			Object value = Array.get(array, i);
+			if (!this.isCycle(value)) {
+				this.separator(first);
+				this.write(value);
+				first = false;
+			}
+		}
+		this.close(']', first);
+	}
+
+	private void writeBean(Object bean) throws IOException {
+		Plan plan = plan(bean.getClass());
+		this.out.write('{');
+		boolean first = true;
+		for (int i = 0; i < plan.names.length; i++) {
+			Object value = plan.get(i, bean);
+			if (!this.isCycle(value)) {
+				this.separator(first);
+				this.out.write(plan.names[i]);
+				this.colon();
+				this.write(value);
+				first = false;
+			}
+		}
+		this.close('}', first);
+	}
+
+	private boolean isCycle(Object value) {
+		return value != null && this.path.containsKey(value);
+	}
+
+	private void separator(boolean first) throws IOException {
+		if (first) {
+			this.depth++;
+		} else {
+			this.out.write(',');
+		}
+		this.newLine();
+	}
+
+	private void colon() throws IOException {
+		this.out.write(this.prettyPrint ? ": " : ":");
+	}
+
+	private void close(char c, boolean empty) throws IOException {
+		if (!empty) {
+			this.depth--;
+			this.newLine();
+		}
+		this.out.write(c);
+	}
+
+	private void newLine() throws IOException {
+		if (this.prettyPrint) {
+			this.out.write('\n');
+			for (int i = 0; i < this.depth; i++) {
+				this.out.write(INDENT);
+			}
+		}
+	}
+
+	private void writeNumber(Number number) throws IOException {
+		if ((number instanceof Double && !isFinite(number.doubleValue()))
+				|| (number instanceof Float && !isFinite(number.floatValue()))) {
+			this.out.write("null");
+		} else {
+			this.out.write(number.toString());
+		}
+	}
+
+	private static boolean isFinite(double d) {
+		return !Double.isNaN(d) && !Double.isInfinite(d);
+	}
+
+	private void writeString(String s) throws IOException {
+		this.out.write('"');
+		escape(s, this.out);
+		this.out.write('"');
+	}
+
+	/**
+	 * Writes the given string escaped, without quotes. Runs of characters that don't need to be
+	 * escaped are written at once.
+	 */
+	static void escape(String s, Writer out) throws IOException {
+		int length = s.length();
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if (c >= ' ' && c != '"' && c != '\\' && c != '\u2028' && c != '\u2029') {
+				continue;
+			}
+			out.write(s, start, i - start);
+			switch (c) {
+			case '"':
+				out.write("\\\"");
+				break;
+			case '\\':
+				out.write("\\\\");
+				break;
+			case '\n':
+				out.write("\\n");
+				break;
+			case '\r':
+				out.write("\\r");
+				break;
+			case '\t':
+				out.write("\\t");
+				break;
+			case '\b':
+				out.write("\\b");
+				break;
+			case '\f':
+				out.write("\\f");
+				break;
+			default:
+				out.write("\\u");
+				out.write(HEX[(c >> 12) & 0xF]);
+				out.write(HEX[(c >> 8) & 0xF]);
+				out.write(HEX[(c >> 4) & 0xF]);
+				out.write(HEX[c & 0xF]);
+			}
+			start = i + 1;
+		}
+		out.write(s, start, length - start);
+	}
+
+	/**
+	 * Gets the {@link Plan} for the given class, resolving it if it's the first time the class is
+	 * written.
+	 */
+	static Plan plan(Class<?> klass) {
+		Plan plan = plans.get(klass);
+		if (plan == null) {
+			plan = new Plan(klass);
+			Plan previous = plans.putIfAbsent(klass, plan);
+			if (previous != null) {
+				plan = previous;
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * The properties of a bean class, sorted by name. Each property is read either by its getter
+	 * or, for public fields without getter, directly from the field.
+	 */
+	static final class Plan {
+
+		private final char[][] names;
+		private final AccessibleObject[] accessors;
+
+		private Plan(Class<?> klass) {
+			Map<String, AccessibleObject> properties = new TreeMap<String, AccessibleObject>();
+			try {
+				BeanInfo info = Introspector.getBeanInfo(klass);
+				for (PropertyDescriptor descriptor : info.getPropertyDescriptors()) {
+					Method getter = descriptor.getReadMethod();
+					if (getter != null && getter.getParameterTypes().length == 0) {
+						properties.put(descriptor.getName(), accessible(getter));
+					}
+				}
+			} catch (IntrospectionException ex) {
+				throw new IllegalArgumentException("Unable to introspect class " + klass.getName(), ex);
+			}
+			for (Field field : klass.getFields()) {
+				int modifiers = field.getModifiers();
+				if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !properties.containsKey(field.getName())) {
+					properties.put(field.getName(), accessible(field));
+				}
+			}
+			this.names = new char[properties.size()][];
+			this.accessors = new AccessibleObject[properties.size()];
+			int i = 0;
+			for (Entry<String, AccessibleObject> property : properties.entrySet()) {
+				CharArrayWriter name = new CharArrayWriter(property.getKey().length() + 2);
+				name.write('"');
+				try {
+					escape(property.getKey(), name);
+				} catch (IOException ex) {
+					// CharArrayWriter doesn't throw IOException
+				}
+				name.write('"');
+				this.names[i] = name.toCharArray();
+				this.accessors[i] = property.getValue();
+				i++;
+			}
+		}
+
+		/**
+		 * Gets the escaped and quoted names of the properties
+		 */
+		char[][] names() {
+			return this.names;
+		}
+
+		private Object get(int property, Object bean) {
+			AccessibleObject accessor = this.accessors[property];
+			try {
+				if (accessor instanceof Method) {
+					return ((Method) accessor).invoke(bean);
+				} else {
+					return ((Field) accessor).get(bean);
+				}
+			} catch (Exception ex) {
+				throw new IllegalStateException("Unable to read property " + new String(this.names[property]) + " from "
+						+ bean.getClass().getName(), ex);
+			}
+		}
+
+		private static AccessibleObject accessible(AccessibleObject accessor) {
+			try {
+				// public members of non public classes can't be accessed otherwise
+				accessor.setAccessible(true);
+			} catch (SecurityException ex) {
+				// keeps the default access check
+			}
+			return accessor;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.render;
+
+import java.util.Map;
+
+import org.apache.velocity.context.AbstractContext;
+
+/**
+ * A velocity context that reads and writes the response output map directly, without copying
+ * it.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class OutputContext extends AbstractContext {
+
+	private final Map<String, Object> output;
+
+	public OutputContext(Map<String, Object> output) {
+		this.output = output;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.velocity.context.AbstractContext#internalGet(java.lang.String)
+	 */
+	@Override
+	public Object internalGet(String key) {
+		return this.output.get(key);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.velocity.context.AbstractContext#internalPut(java.lang.String,
+	 * java.lang.Object)
+	 */
+	@Override
+	public Object internalPut(String key, Object value) {
+		return this.output.put(key, value);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.velocity.context.AbstractContext#internalContainsKey(java.lang.Object)
+	 */
+	@Override
+	public boolean internalContainsKey(Object key) {
+		return this.output.containsKey(key);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.velocity.context.AbstractContext#internalGetKeys()
+	 */
+	@Override
+	public Object[] internalGetKeys() {
+		return this.output.keySet().toArray();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.velocity.context.AbstractContext#internalRemove(java.lang.Object)
+	 */
+	@Override
+	public Object internalRemove(Object key) {
+		return this.output.remove(key);
+	}
+}
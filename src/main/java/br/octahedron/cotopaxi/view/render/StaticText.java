@@ -0,0 +1,75 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.render;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import org.apache.velocity.context.InternalContextAdapter;
+import org.apache.velocity.runtime.parser.ParserTreeConstants;
+import org.apache.velocity.runtime.parser.node.ASTText;
+import org.apache.velocity.runtime.parser.node.SimpleNode;
+
+/**
+ * A template static text node, processed when the template was loaded. It replaces the Velocity's
+ * {@link ASTText} nodes. If the text was encoded, it's written as is when rendered to an
+ * {@link EncodedOutput} with the same charset.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+final class StaticText extends SimpleNode {
+
+	private final char[] text;
+	private final byte[] bytes;
+	private final Charset charset;
+
+	/**
+	 * @param node
+	 *            the replaced node
+	 * @param text
+	 *            the node text
+	 * @param charset
+	 *            the charset to encode the text, or <code>null</code> if it shouldn't be encoded
+	 */
+	StaticText(ASTText node, String text, Charset charset) {
+		super(ParserTreeConstants.JJTTEXT);
+		this.text = text.toCharArray();
+		this.bytes = (charset != null) ? text.getBytes(charset) : null;
+		this.charset = charset;
+		this.setFirstToken(node.getFirstToken());
+		this.last = node.getLastToken();
+		this.templateName = node.getTemplateName();
+		this.jjtSetParent(node.jjtGetParent());
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.velocity.runtime.parser.node.SimpleNode#render(org.apache.velocity.context.
+	 * InternalContextAdapter, java.io.Writer)
+	 */
+	@Override
+	public boolean render(InternalContextAdapter context, Writer writer) throws IOException {
+		if (this.bytes != null && writer instanceof EncodedOutput && this.charset.equals(((EncodedOutput) writer).charset())) {
+			((EncodedOutput) writer).writeEncoded(this.bytes);
+		} else {
+			writer.write(this.text);
+		}
+		return true;
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.render;
+
+import br.octahedron.cotopaxi.Boot;
+import br.octahedron.cotopaxi.BootException;
+import br.octahedron.cotopaxi.Bootloader;
+import br.octahedron.cotopaxi.inject.Injector;
+import br.octahedron.util.Log;
+
+/**
+ * A {@link Bootloader} that parses all the application templates when it boots, so the first
+ * request to each page doesn't pay the template parsing cost. It's only useful if the
+ * {@link TemplateRender} in use is the {@link VelocityTemplateRender}.
+ * 
+ * To use it, add it to the bootloaders at the configuration file:
+ * 
+ * <pre>
+ * bootloaders
+ *     br.octahedron.cotopaxi.view.render.TemplatePrecompiler
+ * </pre>
+ * 
+ * It doesn't depend on other bootloaders, so it's executed concurrently with them.
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+@Boot
+public class TemplatePrecompiler implements Bootloader {
+
+	private static final Log log = new Log(TemplatePrecompiler.class);
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see br.octahedron.cotopaxi.Bootloader#boot()
+	 */
+	@Override
+	public void boot() {
+		TemplateRender render;
+		try {
+			render = Injector.getInstance(TemplateRender.class);
+		} catch (InstantiationException ex) {
+			throw new BootException("Unable to load the template render", ex);
+		}
+		if (render instanceof VelocityTemplateRender) {
+			((VelocityTemplateRender) render).precompile();
+		} else {
+			log.info("%s doesn't support templates precompilation", render.getClass().getName());
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.render;
+
+import static br.octahedron.cotopaxi.CotopaxiProperty.charset;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+
+import org.apache.velocity.Template;
+import org.apache.velocity.runtime.RuntimeServices;
+import org.apache.velocity.runtime.parser.node.ASTText;
+import org.apache.velocity.runtime.parser.node.Node;
+import org.apache.velocity.runtime.resource.Resource;
+import org.apache.velocity.runtime.resource.ResourceManagerImpl;
+
+import br.octahedron.util.Log;
+
+/**
+ * A Velocity resource manager that processes the templates' static text when templates are loaded,
+ * replacing their text nodes by {@link StaticText} nodes. The text can be minified, by a
+ * {@link HtmlMinifier}, and encoded.
+ * 
+ * @see br.octahedron.cotopaxi.CotopaxiProperty#TEMPLATE_PREENCODING
+ * @see br.octahedron.cotopaxi.CotopaxiProperty#TEMPLATE_MINIFY
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class TemplateResourceManager extends ResourceManagerImpl {
+
+	/**
+	 * The Velocity property to enable templates' text encoding
+	 */
+	public static final String PREENCODING = "cotopaxi.template.preencoding";
+	/**
+	 * The Velocity property to enable templates' text minification
+	 */
+	public static final String MINIFY = "cotopaxi.template.minify";
+
+	private static final Log log = new Log(TemplateResourceManager.class);
+
+	private boolean preencoding;
+	private boolean minify;
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.apache.velocity.runtime.resource.ResourceManagerImpl#initialize(org.apache.velocity.runtime
+	 * .RuntimeServices)
+	 */
+	@Override
+	public synchronized void initialize(RuntimeServices rsvc) {
+		super.initialize(rsvc);
+		this.preencoding = rsvc.getBoolean(PREENCODING, false);
+		this.minify = rsvc.getBoolean(MINIFY, false);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.apache.velocity.runtime.resource.ResourceManagerImpl#loadResource(java.lang.String,
+	 * int, java.lang.String)
+	 */
+	@Override
+	protected Resource loadResource(String resourceName, int resourceType, String encoding) {
+		return this.process(super.loadResource(resourceName, resourceType, encoding));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * org.apache.velocity.runtime.resource.ResourceManagerImpl#refreshResource(org.apache.velocity
+	 * .runtime.resource.Resource, java.lang.String)
+	 */
+	@Override
+	protected Resource refreshResource(Resource resource, String encoding) {
+		return this.process(super.refreshResource(resource, encoding));
+	}
+
+	private Resource process(Resource resource) {
+		if (resource instanceof Template && resource.getData() instanceof Node) {
+			try {
+				HtmlMinifier minifier = this.minify ? new HtmlMinifier() : null;
+				this.process((Node) resource.getData(), minifier, this.preencoding ? charset() : null);
+				log.debug("Template %s static text processed", resource.getName());
+			} catch (IOException ex) {
+				log.warning("Unable to process template %s: %s", resource.getName(), ex.toString());
+			}
+		}
+		return resource;
+	}
+
+	/**
+	 * Replaces the text nodes, in the same order they appear at the template.
+	 */
+	private void process(Node node, HtmlMinifier minifier, Charset charset) throws IOException {
+		for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+			Node child = node.jjtGetChild(i);
+			if (child instanceof ASTText) {
+				StringWriter text = new StringWriter();
+				child.render(null, text);
+				String content = (minifier != null) ? minifier.minify(text.toString()) : text.toString();
+				node.jjtAddChild(new StaticText((ASTText) child, content, charset), i);
+			} else {
+				this.process(child, minifier, charset);
+			}
+		}
+	}
+}
@@ -16,21 +16,33 @@
  */
 package br.octahedron.cotopaxi.view.render;
 
+import static br.octahedron.cotopaxi.CotopaxiProperty.BOOT_THREADS;
+import static br.octahedron.cotopaxi.CotopaxiProperty.TEMPLATE_CHECK_INTERVAL;
 import static br.octahedron.cotopaxi.CotopaxiProperty.TEMPLATE_FOLDER;
+import static br.octahedron.cotopaxi.CotopaxiProperty.TEMPLATE_MINIFY;
+import static br.octahedron.cotopaxi.CotopaxiProperty.TEMPLATE_PREENCODING;
 import static br.octahedron.cotopaxi.CotopaxiProperty.charset;
 import static br.octahedron.cotopaxi.CotopaxiProperty.property;
+import static br.octahedron.cotopaxi.CotopaxiProperty.runningMode;
 import static br.octahedron.util.FileUtil.getFile;
 import static java.io.File.separator;
 
 import java.io.File;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.velocity.Template;
-import org.apache.velocity.VelocityContext;
 import org.apache.velocity.app.VelocityEngine;
 
+import br.octahedron.cotopaxi.CotopaxiProperty.RunningMode;
 import br.octahedron.util.Log;
 
 /**
@@ -38,6 +50,17 @@ import br.octahedron.util.Log;
  * 
  * Generally used on controllers to render the attributes of request.
  * 
+ * Parsed templates are cached according to the application {@link RunningMode}: at PRODUCTION
+ * they're parsed once and never checked again; at TEST they aren't cached; otherwise they're
+ * checked for modifications every {@link br.octahedron.cotopaxi.CotopaxiProperty#TEMPLATE_CHECK_INTERVAL}
+ * seconds.
+ * 
+ * If {@link br.octahedron.cotopaxi.CotopaxiProperty#TEMPLATE_PREENCODING} is enabled, the
+ * templates' static text is encoded when templates are loaded, by the
+ * {@link TemplateResourceManager}, and written as is to {@link EncodedOutput}s. If
+ * {@link br.octahedron.cotopaxi.CotopaxiProperty#TEMPLATE_MINIFY} includes the current running
+ * mode, the static text is also minified.
+ * 
  * @author Vítor Avelino - vitoravelino@octahedron.com.br
  * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
  */
@@ -45,14 +68,18 @@ public class VelocityTemplateRender implements TemplateRender {
 
 	private static final Log log = new Log(VelocityTemplateRender.class);
 	private static final String VELOCIMACRO_LIBRARY = "macros.vm";
+	private static final String TEMPLATE_EXTENSION = ".vm";
 
 	private final VelocityEngine engine = new VelocityEngine();
+	private final String templateFolder;
+	private final boolean cache;
 
 	public VelocityTemplateRender() {
 		String templateFolder = property(TEMPLATE_FOLDER);
 		if (!templateFolder.endsWith("/")) {
 			templateFolder += '/';
 		}
+		this.templateFolder = templateFolder;
 		Properties p = new Properties();
 		p.setProperty("resource.loader", "file, class");
 		p.setProperty("class.resource.loader.class","org.apache.velocity.runtime.resource.loader.ClasspathResourceLoader");
@@ -63,9 +90,39 @@ public class VelocityTemplateRender implements TemplateRender {
 		if (hasMacros(macroFile)) {
 			p.setProperty("velocimacro.library", macroFile);
 		}
+		RunningMode mode = runningMode();
+		boolean preencoding = Boolean.parseBoolean(property(TEMPLATE_PREENCODING));
+		boolean minify = isMinified(mode);
+		if (preencoding || minify) {
+			p.setProperty("resource.manager.class", TemplateResourceManager.class.getName());
+			p.setProperty(TemplateResourceManager.PREENCODING, String.valueOf(preencoding));
+			p.setProperty(TemplateResourceManager.MINIFY, String.valueOf(minify));
+		}
+		this.cache = (mode != RunningMode.TEST);
+		if (this.cache) {
+			// in production templates don't change: they're never checked and never evicted
+			String interval = (mode == RunningMode.PRODUCTION) ? "0" : property(TEMPLATE_CHECK_INTERVAL);
+			p.setProperty("file.resource.loader.cache", "true");
+			p.setProperty("file.resource.loader.modificationCheckInterval", interval);
+			p.setProperty("class.resource.loader.cache", "true");
+			p.setProperty("class.resource.loader.modificationCheckInterval", interval);
+			if (mode == RunningMode.PRODUCTION) {
+				p.setProperty("resource.manager.defaultcache.size", "0");
+			}
+		}
+		log.debug("Templates cache %s for %s running mode", this.cache ? "enabled" : "disabled", mode);
 		engine.init(p);
 	}
 
+	private static boolean isMinified(RunningMode mode) {
+		for (String minified : property(TEMPLATE_MINIFY).split(",")) {
+			if (minified.trim().equalsIgnoreCase(mode.name())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private static boolean hasMacros(String macroPath) {
 		File f = getFile(macroPath);
 		return f.exists();
@@ -79,8 +136,91 @@ public class VelocityTemplateRender implements TemplateRender {
 	 */
 	public void render(String templatePath, Map<String, Object> output, Writer writer) {
 		log.info("Rendering template %s", templatePath);
-		VelocityContext context = new VelocityContext(output);
 		Template template = engine.getTemplate(templatePath);
-		template.merge(context, writer);
+		template.merge(new OutputContext(output), writer);
+	}
+
+	/**
+	 * Parses all the templates at the template folder, and its sub folders, so they're cached
+	 * before being rendered. Templates are parsed concurrently, by up to
+	 * {@link br.octahedron.cotopaxi.CotopaxiProperty#BOOT_THREADS} threads. Templates that can't be
+	 * parsed are logged and skipped.
+	 * 
+	 * @return the number of templates parsed
+	 */
+	public int precompile() {
+		if (!this.cache) {
+			log.info("Templates aren't cached at %s running mode. Skipping templates precompilation", runningMode());
+			return 0;
+		}
+		long start = System.nanoTime();
+		List<String> templates = new ArrayList<String>();
+		listTemplates(getFile(this.templateFolder), "", templates);
+		int threads = Math.min(templates.size(), Integer.parseInt(property(BOOT_THREADS)));
+		int compiled = 0;
+		if (threads > 1) {
+			ExecutorService pool = Executors.newFixedThreadPool(threads);
+			try {
+				List<Future<Boolean>> results = new ArrayList<Future<Boolean>>(templates.size());
+				for (final String template : templates) {
+					results.add(pool.submit(new Callable<Boolean>() {
+						@Override
+						public Boolean call() {
+							return compile(template);
+						}
+					}));
+				}
+				for (Future<Boolean> result : results) {
+					if (result.get()) {
+						compiled++;
+					}
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				log.warning("Templates precompilation interrupted");
+			} catch (ExecutionException ex) {
+				// compile catches templates' failures
+				log.warning(ex.getCause(), "Unexpected error precompiling templates");
+			} finally {
+				pool.shutdownNow();
+			}
+		} else {
+			for (String template : templates) {
+				if (this.compile(template)) {
+					compiled++;
+				}
+			}
+		}
+		log.info("%d of %d templates precompiled in %d ms", compiled, templates.size(), (System.nanoTime() - start) / 1000000);
+		return compiled;
+	}
+
+	private boolean compile(String template) {
+		try {
+			this.engine.getTemplate(template);
+			log.debug("Template %s precompiled", template);
+			return true;
+		} catch (Exception ex) {
+			log.error("Unable to precompile template %s: %s", template, ex.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Lists the templates at the given folder, and its sub folders, except the macros library.
+	 */
+	private static void listTemplates(File folder, String prefix, List<String> templates) {
+		File[] files = folder.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			String name = prefix + file.getName();
+			if (file.isDirectory()) {
+				listTemplates(file, name + "/", templates);
+			} else if (name.endsWith(TEMPLATE_EXTENSION) && !name.equals(VELOCIMACRO_LIBRARY)) {
+				templates.add(name);
+			}
+		}
 	}
 }
@@ -0,0 +1,77 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.response;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletResponse;
+
+import br.octahedron.cotopaxi.controller.ControllerResponse;
+
+/**
+ * A {@link ControllerResponse} without body, that informs the methods allowed for the requested
+ * URL through the Allow header. It's used to answer OPTIONS requests and requests using a method
+ * not allowed (405) for the requested URL.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class AllowedMethodsResponse implements ControllerResponse {
+
+	private static final String ALLOW_HEADER = "Allow";
+
+	private final int code;
+	private final String allowedMethods;
+
+	/**
+	 * @param code
+	 *            The HTTP response code
+	 * @param allowedMethods
+	 *            The Allow header value
+	 */
+	public AllowedMethodsResponse(int code, String allowedMethods) {
+		this.code = code;
+		this.allowedMethods = allowedMethods;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * br.octahedron.cotopaxi.controller.ControllerResponse#dispatch(javax.servlet.http.HttpServletResponse
+	 * )
+	 */
+	@Override
+	public void dispatch(HttpServletResponse servletResponse) throws IOException {
+		servletResponse.setStatus(this.code);
+		servletResponse.setHeader(ALLOW_HEADER, this.allowedMethods);
+		servletResponse.setContentLength(0);
+	}
+
+	/**
+	 * @return the result code
+	 */
+	public int code() {
+		return this.code;
+	}
+
+	/**
+	 * @return the Allow header value
+	 */
+	public String allowedMethods() {
+		return this.allowedMethods;
+	}
+}
@@ -16,12 +16,11 @@
  */
 package br.octahedron.cotopaxi.view.response;
 
-import static br.octahedron.cotopaxi.CotopaxiProperty.charset;
+import static br.octahedron.cotopaxi.CotopaxiProperty.snapshot;
+
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.Writer;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Locale;
 import java.util.Map;
@@ -32,12 +31,19 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletResponse;
 
+import br.octahedron.cotopaxi.CotopaxiProperty.Snapshot;
 import br.octahedron.cotopaxi.controller.ControllerContext;
 import br.octahedron.cotopaxi.controller.ControllerResponse;
+import br.octahedron.util.CompactMap;
 
 /**
  * A {@link ControllerResponse} that can be intercepted.
  * 
+ * The response is rendered to a buffer. If the whole response fits in the buffer, it's written at
+ * once, with its Content-Length. Otherwise, it's streamed.
+ * 
+ * @see br.octahedron.cotopaxi.CotopaxiProperty#RESPONSE_BUFFER_SIZE
+ * 
  * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
  */
 public abstract class RenderableResponse extends ServletGenericResponse {
@@ -68,7 +74,7 @@ public abstract class RenderableResponse extends ServletGenericResponse {
 	 *            The output locale
 	 */
 	protected RenderableResponse(int code, Map<String, Object> output, Locale locale) {
-		this(code, output, new HashSet<Cookie>(), new HashMap<String, String>(), locale);
+		this(code, output, new HashSet<Cookie>(), new CompactMap<String, String>(), locale);
 	}
 
 	/**
@@ -91,6 +97,22 @@ public abstract class RenderableResponse extends ServletGenericResponse {
 		this.locale = locale;
 	}
 
+	/**
+	 * Resets this response to be reused by the given context.
+	 * 
+	 * @param code
+	 *            The HTTP response code
+	 * @param context
+	 *            The request {@link ControllerContext}
+	 */
+	public void reset(int code, ControllerContext context) {
+		this.code = code;
+		this.output = context.getOutput();
+		this.cookies = context.getCookies();
+		this.headers = context.getHeaders();
+		this.locale = context.getLocale();
+	}
+
 	/**
 	 * Gets the {@link OutputStream} to be used to write output.
 	 * 
@@ -110,8 +132,21 @@ public abstract class RenderableResponse extends ServletGenericResponse {
 	 */
 	@Override
 	public final void dispatch(HttpServletResponse servletResponse) throws IOException {
-		this.writer = new OutputStreamWriter(this.getOutputStream(servletResponse), charset());
+		Snapshot snapshot = snapshot();
+		OutputStream out = this.getOutputStream(servletResponse);
+		ResponseBuffer buffer = ResponseBuffer.acquire(out, snapshot.responseBufferSize(), snapshot.charset());
+		boolean done = false;
+		try {
+			this.writer = buffer.writer();
+			this.dispatch(servletResponse, out, buffer);
+			done = true;
+		} finally {
+			this.writer = null;
+			ResponseBuffer.release(buffer, done);
+		}
+	}
 
+	private void dispatch(HttpServletResponse servletResponse, OutputStream out, ResponseBuffer buffer) throws IOException {
 		// adjust headers
 		if (this.headers != null) {
 			for (Entry<String, String> entry : this.headers.entrySet()) {
@@ -133,13 +168,19 @@ public abstract class RenderableResponse extends ServletGenericResponse {
 
 		// render output
 		this.render();
+		this.writer.flush();
+
+		// the length is only known if the output wasn't streamed, nor encoded by other stream
+		if (!buffer.isStreaming() && out == servletResponse.getOutputStream()) {
+			servletResponse.setContentLength(buffer.size());
+		}
+		buffer.finish();
 
 		// flush, if necessary
 		if (servletResponse.isCommitted()) {
 			servletResponse.flushBuffer();
 		}
-		this.writer.close();
-		this.writer = null;
+		out.close();
 	}
 
 	/**
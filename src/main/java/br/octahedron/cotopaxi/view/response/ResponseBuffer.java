@@ -0,0 +1,263 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.response;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import br.octahedron.cotopaxi.view.render.EncodedOutput;
+
+/**
+ * Buffers a response body before writing it to the container. While the body fits in the buffer
+ * nothing is written, so the whole body can be written at once, and its length is known. When the
+ * body overflows the buffer, the buffer content is written and the body is streamed, in chunks up
+ * to the buffer limit.
+ * 
+ * Buffers, and their {@link Writer}s, are pooled to be reused by next responses. The buffers'
+ * writers are {@link EncodedOutput}s, so already encoded text is written directly to the buffer.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+final class ResponseBuffer extends OutputStream {
+
+	private static final int INITIAL_SIZE = 8192;
+	private static final int MAX_POOLED = 64;
+	private static final Queue<ResponseBuffer> pool = new ConcurrentLinkedQueue<ResponseBuffer>();
+	private static final AtomicInteger pooled = new AtomicInteger();
+
+	/**
+	 * Gets a buffer to write a response to the given stream.
+	 * 
+	 * @param target
+	 *            the stream to write the response
+	 * @param limit
+	 *            the maximum number of bytes buffered
+	 * @param charset
+	 *            the charset used by the buffer {@link Writer}
+	 */
+	static ResponseBuffer acquire(OutputStream target, int limit, Charset charset) {
+		ResponseBuffer buffer = pool.poll();
+		if (buffer != null) {
+			pooled.decrementAndGet();
+		} else {
+			buffer = new ResponseBuffer();
+		}
+		buffer.target = target;
+		buffer.limit = Math.max(limit, 1);
+		if (!charset.equals(buffer.charset)) {
+			buffer.charset = charset;
+			buffer.writer = buffer.new BufferWriter(charset);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Releases the given buffer, to be reused. Buffers used by failed responses can have
+	 * characters pending at their writer, so they're discarded.
+	 * 
+	 * @param reusable
+	 *            if the buffer can be reused
+	 */
+	static void release(ResponseBuffer buffer, boolean reusable) {
+		buffer.target = null;
+		buffer.count = 0;
+		buffer.streaming = false;
+		if (reusable && buffer.buf.length <= buffer.limit) {
+			if (pooled.incrementAndGet() <= MAX_POOLED) {
+				pool.offer(buffer);
+			} else {
+				pooled.decrementAndGet();
+			}
+		}
+	}
+
+	private byte[] buf = new byte[INITIAL_SIZE];
+	private int count;
+	private int limit;
+	private boolean streaming;
+	private OutputStream target;
+	private Charset charset;
+	private BufferWriter writer;
+
+	private ResponseBuffer() {
+		// use acquire
+	}
+
+	/**
+	 * Gets the {@link Writer} to write to this buffer. It should be flushed before finishing the
+	 * buffer.
+	 */
+	Writer writer() {
+		return this.writer;
+	}
+
+	/**
+	 * Checks if the response has overflowed the buffer, and it's being streamed
+	 */
+	boolean isStreaming() {
+		return this.streaming;
+	}
+
+	/**
+	 * Gets the number of bytes buffered. If the response isn't being streamed, it's the response
+	 * length.
+	 */
+	int size() {
+		return this.count;
+	}
+
+	/**
+	 * Writes the buffered bytes to the target stream.
+	 */
+	void finish() throws IOException {
+		if (this.count > 0) {
+			this.target.write(this.buf, 0, this.count);
+			this.count = 0;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.OutputStream#write(int)
+	 */
+	@Override
+	public void write(int b) throws IOException {
+		this.ensureCapacity(1);
+		this.buf[this.count++] = (byte) b;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.OutputStream#write(byte[], int, int)
+	 */
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			this.ensureCapacity(Math.min(len, this.limit));
+			int chunk = Math.min(len, this.capacity() - this.count);
+			System.arraycopy(b, off, this.buf, this.count, chunk);
+			this.count += chunk;
+			off += chunk;
+			len -= chunk;
+		}
+	}
+
+	/**
+	 * Makes room for, at least, the given number of bytes, growing the buffer up to its limit. If
+	 * the buffer is full, its content is written to the target and the response starts to be
+	 * streamed.
+	 */
+	private void ensureCapacity(int needed) throws IOException {
+		if (this.count + needed <= this.capacity()) {
+			return;
+		}
+		if (this.buf.length < this.limit) {
+			int size = Math.min(this.limit, Math.max(this.buf.length << 1, this.count + needed));
+			byte[] newBuf = new byte[size];
+			System.arraycopy(this.buf, 0, newBuf, 0, this.count);
+			this.buf = newBuf;
+		}
+		if (this.count + needed > this.capacity()) {
+			this.streaming = true;
+			this.finish();
+		}
+	}
+
+	private int capacity() {
+		return Math.min(this.buf.length, this.limit);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.io.OutputStream#flush()
+	 */
+	@Override
+	public void flush() {
+		// the buffer is written when finished or full
+	}
+
+	/**
+	 * Writes characters, encoded, and already encoded text to the buffer.
+	 */
+	private final class BufferWriter extends Writer implements EncodedOutput {
+
+		private final Charset charset;
+		private final Writer out;
+
+		private BufferWriter(Charset charset) {
+			this.charset = charset;
+			this.out = new BufferedWriter(new OutputStreamWriter(ResponseBuffer.this, charset));
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see br.octahedron.cotopaxi.view.render.EncodedOutput#charset()
+		 */
+		@Override
+		public Charset charset() {
+			return this.charset;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see br.octahedron.cotopaxi.view.render.EncodedOutput#writeEncoded(byte[])
+		 */
+		@Override
+		public void writeEncoded(byte[] bytes) throws IOException {
+			// pending characters go first
+			this.out.flush();
+			ResponseBuffer.this.write(bytes, 0, bytes.length);
+		}
+
+		@Override
+		public void write(int c) throws IOException {
+			this.out.write(c);
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			this.out.write(cbuf, off, len);
+		}
+
+		@Override
+		public void write(String str, int off, int len) throws IOException {
+			this.out.write(str, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			this.out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.out.close();
+		}
+	}
+}
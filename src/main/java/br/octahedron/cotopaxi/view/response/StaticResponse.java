@@ -0,0 +1,72 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.response;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletResponse;
+
+import br.octahedron.cotopaxi.controller.ControllerResponse;
+
+/**
+ * A {@link ControllerResponse} with a pre-rendered body. It doesn't depend on any request, so a
+ * single instance can be dispatched many times, by many threads.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class StaticResponse implements ControllerResponse {
+
+	private final int code;
+	private final String contentType;
+	private final byte[] body;
+
+	/**
+	 * @param code
+	 *            The HTTP response code
+	 * @param contentType
+	 *            The response content type
+	 * @param body
+	 *            The response body
+	 */
+	public StaticResponse(int code, String contentType, byte[] body) {
+		this.code = code;
+		this.contentType = contentType;
+		this.body = body;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * br.octahedron.cotopaxi.controller.ControllerResponse#dispatch(javax.servlet.http.HttpServletResponse
+	 * )
+	 */
+	@Override
+	public void dispatch(HttpServletResponse servletResponse) throws IOException {
+		servletResponse.setStatus(this.code);
+		servletResponse.setContentType(this.contentType);
+		servletResponse.setContentLength(this.body.length);
+		servletResponse.getOutputStream().write(this.body);
+	}
+
+	/**
+	 * @return the result code
+	 */
+	public int code() {
+		return this.code;
+	}
+}
@@ -76,6 +76,22 @@ public class TemplateResponse extends RenderableResponse {
 		this.template = template;
 	}
 
+	/**
+	 * Resets this response to be reused by the given context.
+	 * 
+	 * @param template
+	 *            The template to be rendered
+	 * @param code
+	 *            The HTTP result code
+	 * @param context
+	 *            The request {@link ControllerContext}
+	 */
+	public void reset(String template, int code, ControllerContext context) {
+		this.reset(code, context);
+		this.template = template;
+		this.builder = null;
+	}
+
 	/**
 	 * @param templateRender
 	 *            the templateRender to set
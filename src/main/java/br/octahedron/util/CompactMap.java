@@ -0,0 +1,343 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A {@link Map} for a few entries. Keys and values are kept at parallel arrays, and looked up
+ * linearly, so small maps don't allocate an entry object for each mapping. Once the map grows past
+ * {@link #THRESHOLD} entries, it's moved to a {@link HashMap}.
+ * 
+ * This map isn't thread safe, and keeps the insertion order while it's small.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class CompactMap<K, V> extends AbstractMap<K, V> {
+
+	/**
+	 * The maximum number of entries kept at the arrays.
+	 */
+	public static final int THRESHOLD = 16;
+	private static final int INITIAL_CAPACITY = 4;
+
+	private Object[] keys;
+	private Object[] values;
+	private int size = 0;
+	private HashMap<K, V> hash = null;
+	private Set<Entry<K, V>> entrySet = null;
+
+	public CompactMap() {
+		this(INITIAL_CAPACITY);
+	}
+
+	public CompactMap(int capacity) {
+		capacity = Math.min(Math.max(capacity, 1), THRESHOLD);
+		this.keys = new Object[capacity];
+		this.values = new Object[capacity];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.AbstractMap#size()
+	 */
+	@Override
+	public int size() {
+		return (this.hash != null) ? this.hash.size() : this.size;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.AbstractMap#containsKey(java.lang.Object)
+	 */
+	@Override
+	public boolean containsKey(Object key) {
+		return (this.hash != null) ? this.hash.containsKey(key) : this.indexOf(key) >= 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.AbstractMap#get(java.lang.Object)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		if (this.hash != null) {
+			return this.hash.get(key);
+		}
+		int index = this.indexOf(key);
+		return (index >= 0) ? (V) this.values[index] : null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.AbstractMap#put(java.lang.Object, java.lang.Object)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public V put(K key, V value) {
+		if (this.hash != null) {
+			return this.hash.put(key, value);
+		}
+		int index = this.indexOf(key);
+		if (index >= 0) {
+			V previous = (V) this.values[index];
+			this.values[index] = value;
+			return previous;
+		}
+		if (this.size == THRESHOLD) {
+			this.toHash();
+			return this.hash.put(key, value);
+		}
+		if (this.size == this.keys.length) {
+			this.grow();
+		}
+		this.keys[this.size] = key;
+		this.values[this.size] = value;
+		this.size++;
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.AbstractMap#remove(java.lang.Object)
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public V remove(Object key) {
+		if (this.hash != null) {
+			return this.hash.remove(key);
+		}
+		int index = this.indexOf(key);
+		if (index >= 0) {
+			V previous = (V) this.values[index];
+			this.removeAt(index);
+			return previous;
+		}
+		return null;
+	}
+
+	/**
+	 * Removes all mappings. A map moved to a {@link HashMap} goes back to the arrays, so it can be
+	 * reused.
+	 */
+	@Override
+	public void clear() {
+		for (int i = 0; i < this.size; i++) {
+			this.keys[i] = null;
+			this.values[i] = null;
+		}
+		this.size = 0;
+		this.hash = null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.AbstractMap#entrySet()
+	 */
+	@Override
+	public Set<Entry<K, V>> entrySet() {
+		if (this.entrySet == null) {
+			this.entrySet = new EntrySet();
+		}
+		return this.entrySet;
+	}
+
+	private int indexOf(Object key) {
+		if (key == null) {
+			for (int i = 0; i < this.size; i++) {
+				if (this.keys[i] == null) {
+					return i;
+				}
+			}
+		} else {
+			// same instance first, since keys are usually literals
+			for (int i = 0; i < this.size; i++) {
+				if (key == this.keys[i]) {
+					return i;
+				}
+			}
+			int hashCode = key.hashCode();
+			for (int i = 0; i < this.size; i++) {
+				Object k = this.keys[i];
+				if (k != null && k.hashCode() == hashCode && key.equals(k)) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	private void removeAt(int index) {
+		int moved = this.size - index - 1;
+		if (moved > 0) {
+			System.arraycopy(this.keys, index + 1, this.keys, index, moved);
+			System.arraycopy(this.values, index + 1, this.values, index, moved);
+		}
+		this.size--;
+		this.keys[this.size] = null;
+		this.values[this.size] = null;
+	}
+
+	private void grow() {
+		int capacity = Math.min(this.keys.length * 2, THRESHOLD);
+		Object[] keys = new Object[capacity];
+		Object[] values = new Object[capacity];
+		System.arraycopy(this.keys, 0, keys, 0, this.size);
+		System.arraycopy(this.values, 0, values, 0, this.size);
+		this.keys = keys;
+		this.values = values;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void toHash() {
+		HashMap<K, V> hash = new HashMap<K, V>(THRESHOLD * 4);
+		for (int i = 0; i < this.size; i++) {
+			hash.put((K) this.keys[i], (V) this.values[i]);
+			this.keys[i] = null;
+			this.values[i] = null;
+		}
+		this.size = 0;
+		this.hash = hash;
+	}
+
+	/**
+	 * The entries view. It's backed by the arrays or by the {@link HashMap}, whichever is in use.
+	 */
+	private class EntrySet extends AbstractSet<Entry<K, V>> {
+
+		@Override
+		public Iterator<Entry<K, V>> iterator() {
+			if (CompactMap.this.hash != null) {
+				return CompactMap.this.hash.entrySet().iterator();
+			}
+			return new ArrayIterator();
+		}
+
+		@Override
+		public int size() {
+			return CompactMap.this.size();
+		}
+
+		@Override
+		public void clear() {
+			CompactMap.this.clear();
+		}
+	}
+
+	/**
+	 * Iterates over the arrays' entries.
+	 */
+	private class ArrayIterator implements Iterator<Entry<K, V>> {
+
+		private int next = 0;
+		private int last = -1;
+
+		@Override
+		public boolean hasNext() {
+			return this.next < CompactMap.this.size;
+		}
+
+		@Override
+		public Entry<K, V> next() {
+			if (!this.hasNext()) {
+				throw new NoSuchElementException();
+			}
+			this.last = this.next++;
+			return new ArrayEntry(this.last);
+		}
+
+		@Override
+		public void remove() {
+			if (this.last < 0) {
+				throw new IllegalStateException();
+			}
+			CompactMap.this.removeAt(this.last);
+			this.next = this.last;
+			this.last = -1;
+		}
+	}
+
+	/**
+	 * An entry backed by the arrays' position.
+	 */
+	private class ArrayEntry implements Entry<K, V> {
+
+		private final int index;
+
+		private ArrayEntry(int index) {
+			this.index = index;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public K getKey() {
+			return (K) CompactMap.this.keys[this.index];
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public V getValue() {
+			return (V) CompactMap.this.values[this.index];
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public V setValue(V value) {
+			V previous = (V) CompactMap.this.values[this.index];
+			CompactMap.this.values[this.index] = value;
+			return previous;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Entry)) {
+				return false;
+			}
+			Entry<?, ?> other = (Entry<?, ?>) obj;
+			return eq(this.getKey(), other.getKey()) && eq(this.getValue(), other.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			K key = this.getKey();
+			V value = this.getValue();
+			return ((key == null) ? 0 : key.hashCode()) ^ ((value == null) ? 0 : value.hashCode());
+		}
+
+		@Override
+		public String toString() {
+			return this.getKey() + "=" + this.getValue();
+		}
+
+		private boolean eq(Object a, Object b) {
+			return (a == null) ? b == null : a.equals(b);
+		}
+	}
+}
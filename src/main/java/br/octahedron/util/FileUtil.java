@@ -16,9 +16,11 @@
  */
 package br.octahedron.util;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 
 /**
@@ -43,6 +45,30 @@ public class FileUtil {
 		}
 	}
 
+	/**
+	 * Reads all the given file content.
+	 */
+	public static byte[] getBytes(String filepath) throws IOException {
+		return getBytes(getInputStream(filepath));
+	}
+
+	/**
+	 * Reads all the given {@link InputStream} content, closing it.
+	 */
+	public static byte[] getBytes(InputStream in) throws IOException {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) != -1) {
+				out.write(buffer, 0, read);
+			}
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
 	public static File getFile(String filepath) {
 		File f = new File(filepath);
 		if (!f.exists()) {
@@ -76,14 +76,20 @@ public class Log {
 	}
 
 	protected void log(Level level, String format, Object... params) {
-		this.log(level, null, String.format(format, params));
+		this.log(level, null, format, params);
 	}
 
 	protected void log(Level level, Throwable t, String format, Object... params) {
-		this.log(level, t, String.format(format, params));
+		// avoids formatting messages that won't be logged
+		if (this.logger.isLoggable(level)) {
+			this.log(level, t, String.format(format, params));
+		}
 	}
 
 	protected void log(Level level, Throwable t, String message) {
+		if (!this.logger.isLoggable(level)) {
+			return;
+		}
 		LogRecord record = new LogRecord(level, message);
 		record.setSourceClassName(this.name);
 		if (t != null) {
@@ -0,0 +1,244 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.octahedron.cotopaxi.Bootloader.Booter;
+import br.octahedron.cotopaxi.CotopaxiProperty.Snapshot;
+import br.octahedron.cotopaxi.inject.DependencyManager;
+import br.octahedron.cotopaxi.inject.DependencyManager.Registry;
+
+/**
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class BooterTest {
+
+	private static final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+	@Before
+	public void setUp() {
+		events.clear();
+	}
+
+	@After
+	public void tearDown() {
+		CotopaxiProperty.forceReset();
+	}
+
+	@Test(timeout = 5000)
+	public void bootConcurrently() throws Exception {
+		Booter booter = new Booter();
+		booter.addBootloader(Dependent.class.getName());
+		booter.addBootloader(Slow.class.getName());
+		booter.addBootloader(Fast.class.getName());
+		booter.boot();
+		assertEquals(6, events.size());
+		// fast runs while slow is running, dependent only after slow
+		assertTrue(events.indexOf("end Fast") < events.indexOf("end Slow"));
+		assertTrue(events.indexOf("end Slow") < events.indexOf("start Dependent"));
+	}
+
+	@Test
+	public void bootSequentially() throws Exception {
+		System.setProperty(CotopaxiProperty.BOOT_THREADS.name(), "1");
+		Booter booter = new Booter();
+		booter.addBootloader(Dependent.class.getName());
+		booter.addBootloader(Slow.class.getName());
+		booter.addBootloader(Fast.class.getName());
+		booter.boot();
+		// configuration order, unless a dependency isn't booted yet
+		assertEquals(Arrays.asList("start Slow", "end Slow", "start Fast", "end Fast", "start Dependent", "end Dependent"), events);
+	}
+
+	@Test
+	public void requiredFailure() throws Exception {
+		Booter booter = new Booter();
+		booter.addBootloader(Failing.class.getName());
+		booter.addBootloader(AfterFailing.class.getName());
+		try {
+			booter.boot();
+			fail();
+		} catch (BootException ex) {
+			assertTrue(ex.getCause() instanceof IllegalStateException);
+		}
+		assertTrue(events.isEmpty());
+	}
+
+	@Test
+	public void optionalFailure() throws Exception {
+		Booter booter = new Booter();
+		booter.addBootloader(OptionalFailing.class.getName());
+		booter.addBootloader(Fast.class.getName());
+		booter.boot();
+		assertEquals(2, events.size());
+	}
+
+	@Test
+	public void configurationOrder() throws Exception {
+		Booter booter = new Booter();
+		booter.addBootloader(Slow.class.getName());
+		booter.addBootloader(Fast.class.getName());
+		booter.addBootloader(Plain.class.getName());
+		booter.boot();
+		// bootloaders without @Boot keep the configuration order
+		assertTrue(events.indexOf("end Slow") < events.indexOf("start Plain"));
+		assertTrue(events.indexOf("end Fast") < events.indexOf("end Slow"));
+	}
+
+	@Test
+	public void circularDependency() throws Exception {
+		Booter booter = new Booter();
+		booter.addBootloader(Fast.class.getName());
+		booter.addBootloader(CycleA.class.getName());
+		booter.addBootloader(CycleB.class.getName());
+		try {
+			booter.boot();
+			fail();
+		} catch (BootException ex) {
+			// detected before any bootloader is executed
+			assertTrue(events.isEmpty());
+		}
+	}
+
+	@Test
+	public void bootStaged() throws Exception {
+		Snapshot snapshot = CotopaxiProperty.resolve();
+		Registry registry = new Registry();
+		CotopaxiProperty.stage(snapshot);
+		DependencyManager.stage(registry);
+		try {
+			Booter booter = new Booter();
+			booter.addBootloader(Staged.class.getName());
+			booter.addBootloader(Fast.class.getName());
+			booter.boot();
+		} finally {
+			CotopaxiProperty.stage(null);
+			DependencyManager.stage(null);
+		}
+		// executed by a booting thread, with the booting thread staged configuration
+		assertNotSame(Thread.currentThread(), Staged.thread);
+		assertSame(snapshot, Staged.snapshot);
+		assertSame(registry, Staged.registry);
+	}
+
+	private static void record(Object bootloader, long sleep) {
+		String name = bootloader.getClass().getSimpleName();
+		events.add("start " + name);
+		try {
+			Thread.sleep(sleep);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		events.add("end " + name);
+	}
+
+	public static class Slow implements Bootloader {
+		@Override
+		public void boot() {
+			record(this, 300);
+		}
+	}
+
+	@Boot
+	public static class Fast implements Bootloader {
+		@Override
+		public void boot() {
+			record(this, 0);
+		}
+	}
+
+	public static class Plain implements Bootloader {
+		@Override
+		public void boot() {
+			record(this, 0);
+		}
+	}
+
+	@Boot(after = Slow.class)
+	public static class Dependent implements Bootloader {
+		@Override
+		public void boot() {
+			record(this, 0);
+		}
+	}
+
+	public static class Failing implements Bootloader {
+		@Override
+		public void boot() {
+			throw new IllegalStateException("failed");
+		}
+	}
+
+	@Boot(after = Failing.class)
+	public static class AfterFailing implements Bootloader {
+		@Override
+		public void boot() {
+			record(this, 0);
+		}
+	}
+
+	@Boot(required = false)
+	public static class OptionalFailing implements Bootloader {
+		@Override
+		public void boot() {
+			throw new IllegalStateException("failed");
+		}
+	}
+
+	public static class Staged implements Bootloader {
+		private static volatile Thread thread;
+		private static volatile Snapshot snapshot;
+		private static volatile Registry registry;
+
+		@Override
+		public void boot() {
+			thread = Thread.currentThread();
+			snapshot = CotopaxiProperty.snapshot();
+			registry = DependencyManager.staged();
+		}
+	}
+
+	@Boot(after = CycleB.class)
+	public static class CycleA implements Bootloader {
+		@Override
+		public void boot() {
+			record(this, 0);
+		}
+	}
+
+	@Boot(after = CycleA.class)
+	public static class CycleB implements Bootloader {
+		@Override
+		public void boot() {
+			record(this, 0);
+		}
+	}
+}
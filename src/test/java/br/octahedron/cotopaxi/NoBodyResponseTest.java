@@ -0,0 +1,111 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi;
+
+import static junit.framework.Assert.assertEquals;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Locale;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Test;
+
+import br.octahedron.cotopaxi.view.response.RenderableResponse;
+
+/**
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class NoBodyResponseTest {
+
+	@After
+	public void tearDown() {
+		CotopaxiProperty.forceReset();
+	}
+
+	@Test
+	public void bufferedBody() throws IOException {
+		FakeServletResponse servletResponse = new FakeServletResponse();
+		NoBodyResponse response = new NoBodyResponse(servletResponse.proxy());
+		response(1000).dispatch(response);
+		response.finish();
+		assertEquals(1000, servletResponse.contentLength);
+		assertEquals(1, servletResponse.lengths);
+	}
+
+	@Test
+	public void streamedBody() throws IOException {
+		System.setProperty(CotopaxiProperty.RESPONSE_BUFFER_SIZE.name(), "256");
+		CotopaxiProperty.refresh();
+		FakeServletResponse servletResponse = new FakeServletResponse();
+		NoBodyResponse response = new NoBodyResponse(servletResponse.proxy());
+		response(1000).dispatch(response);
+		response.finish();
+		assertEquals(1000, servletResponse.contentLength);
+		assertEquals(1, servletResponse.lengths);
+	}
+
+	private static RenderableResponse response(final int length) {
+		return new RenderableResponse(200, new HashMap<String, Object>(), Locale.US) {
+			@Override
+			protected String contentType() {
+				return "text/plain";
+			}
+
+			@Override
+			protected void render() {
+				try {
+					for (int i = 0; i < length; i++) {
+						this.writer.write('a');
+					}
+				} catch (IOException ex) {
+					throw new RuntimeException(ex);
+				}
+			}
+		};
+	}
+
+	/**
+	 * A response that fails if the body is written to it
+	 */
+	private static class FakeServletResponse implements InvocationHandler {
+		private int contentLength = -1;
+		private int lengths = 0;
+
+		private HttpServletResponse proxy() {
+			return (HttpServletResponse) Proxy.newProxyInstance(this.getClass().getClassLoader(), new Class<?>[] { HttpServletResponse.class }, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			if (method.getName().equals("getOutputStream") || method.getName().equals("getWriter")) {
+				throw new IllegalStateException("HEAD responses have no body");
+			} else if (method.getName().equals("setContentLength")) {
+				this.contentLength = (Integer) args[0];
+				this.lengths++;
+			} else if (method.getName().equals("isCommitted")) {
+				return false;
+			}
+			return null;
+		}
+	}
+}
@@ -125,6 +125,16 @@ public class ConfigurationParserTest {
 		token = parser.nextToken();
 		assertEquals(TokenType.STRING, token.getTokenType());
 		assertEquals("index", token.getContent());
+		//	/users/{id:int}/posts/{slug:alpha}		get 	post
+		token = parser.nextToken();
+		assertEquals(TokenType.URL, token.getTokenType());
+		assertEquals("/users/{id:int}/posts/{slug:alpha}", token.getContent());
+		token = parser.nextToken();
+		assertEquals(TokenType.STRING, token.getTokenType());
+		assertEquals("get", token.getContent());
+		token = parser.nextToken();
+		assertEquals(TokenType.STRING, token.getTokenType());
+		assertEquals("post", token.getContent());
 	}
 	
 	@Test
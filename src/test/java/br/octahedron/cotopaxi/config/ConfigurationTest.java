@@ -17,19 +17,33 @@
 package br.octahedron.cotopaxi.config;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.io.StringBufferInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
 import java.util.NoSuchElementException;
 
 import org.junit.After;
 import org.junit.Test;
 
 import br.octahedron.cotopaxi.CotopaxiProperty;
+import br.octahedron.cotopaxi.CotopaxiServlet;
+import br.octahedron.cotopaxi.CotopaxiProperty.Snapshot;
 import br.octahedron.cotopaxi.config.ConfigurationParser.Token;
 import br.octahedron.cotopaxi.config.ConfigurationParser.TokenType;
 import br.octahedron.cotopaxi.interceptor.InterceptorManager;
 import br.octahedron.cotopaxi.route.Router;
+import br.octahedron.util.FileUtil;
 
 /**
  * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
@@ -63,4 +77,106 @@ public class ConfigurationTest {
 		loader.loadConfiguration();
 		// TODO improve this tests
 	}
+
+	@Test
+	public void testParse() throws Exception {
+		byte[] content = "properties\n  APPLICATION_BASE_URL http://localhost\ncontrollers\n  br.octahedron.cotopaxi.FakeImpl\n    /test get test\n".getBytes();
+		Configuration configuration = ConfigurationLoader.parse(content);
+		assertEquals(ConfigurationLoader.checksum(content), configuration.getChecksum());
+		assertEquals(1, configuration.getProperties().size());
+		assertEquals("APPLICATION_BASE_URL", configuration.getProperties().get(0)[0]);
+		assertEquals("http://localhost", configuration.getProperties().get(0)[1]);
+		assertEquals(1, configuration.getControllers().size());
+		assertEquals("/test", configuration.getControllers().get(0).getUrl());
+		// parsing doesn't apply the configuration
+		assertEquals(CotopaxiProperty.APPLICATION_BASE_URL.defaultValue(), CotopaxiProperty.property(CotopaxiProperty.APPLICATION_BASE_URL));
+		assertFalse(ConfigurationLoader.checksum(content).equals(ConfigurationLoader.checksum("properties".getBytes())));
+	}
+
+	@Test
+	public void testSnapshot() throws Exception {
+		CotopaxiProperty.forceReset();
+		Snapshot snapshot = CotopaxiProperty.snapshot();
+		assertSame(snapshot, CotopaxiProperty.snapshot());
+		assertEquals(CotopaxiProperty.ERROR_TEMPLATE.defaultValue(), snapshot.get(CotopaxiProperty.ERROR_TEMPLATE));
+		assertEquals(Arrays.asList(new Locale("en")), new ArrayList<Locale>(snapshot.supportedLocales()));
+
+		// the snapshot doesn't change, loading the configuration publishes a new one
+		InputStream in = ClassLoader.getSystemResourceAsStream("test.config");
+		new ConfigurationLoader(new Router(), new InterceptorManager(), in).loadConfiguration();
+		assertEquals(Arrays.asList(new Locale("en")), new ArrayList<Locale>(snapshot.supportedLocales()));
+		Snapshot loaded = CotopaxiProperty.snapshot();
+		assertNotSame(snapshot, loaded);
+		assertEquals(Arrays.asList(new Locale("pt", "BR")), new ArrayList<Locale>(loaded.supportedLocales()));
+		assertSame(loaded.charset(), CotopaxiProperty.charset());
+	}
+
+	@Test
+	public void testStage() throws Exception {
+		CotopaxiProperty.forceReset();
+		Snapshot published = CotopaxiProperty.snapshot();
+		InputStream in = ClassLoader.getSystemResourceAsStream("test.config");
+		Snapshot staged = new ConfigurationLoader(new Router(), new InterceptorManager(), in).stageConfiguration();
+		try {
+			// only the staging thread reads the staged snapshot
+			assertSame(staged, CotopaxiProperty.snapshot());
+			assertEquals(Arrays.asList(new Locale("pt", "BR")), new ArrayList<Locale>(staged.supportedLocales()));
+		} finally {
+			CotopaxiProperty.stage(null);
+		}
+		assertSame(published, CotopaxiProperty.snapshot());
+		CotopaxiProperty.forceReset();
+	}
+
+	@Test
+	public void testCache() throws Exception {
+		byte[] content = FileUtil.getBytes(ClassLoader.getSystemResourceAsStream("test.config"));
+		Configuration parsed = ConfigurationLoader.parse(content);
+		File file = File.createTempFile("cotopaxi", ".cache");
+		try {
+			assertTrue(ConfigurationCache.write(file, parsed));
+			assertTrue(ConfigurationCache.isOwned(file));
+			Configuration cached = ConfigurationCache.read(file, parsed.getChecksum());
+			assertNotNull(cached);
+			assertEquals(parsed.getProperties().size(), cached.getProperties().size());
+			for (int i = 0; i < parsed.getProperties().size(); i++) {
+				assertTrue(Arrays.equals(parsed.getProperties().get(i), cached.getProperties().get(i)));
+			}
+			assertEquals(parsed.getDependencies().size(), cached.getDependencies().size());
+			assertEquals(parsed.getInterceptors(), cached.getInterceptors());
+			assertEquals(parsed.getBootloaders(), cached.getBootloaders());
+			assertEquals(parsed.getControllers(), cached.getControllers());
+			// configuration file changed
+			assertNull(ConfigurationCache.read(file, ConfigurationLoader.checksum("controllers".getBytes())));
+			// corrupted cache
+			FileOutputStream out = new FileOutputStream(file);
+			out.write(new byte[] { 0x43, 0x54, 0x50 });
+			out.close();
+			assertNull(ConfigurationCache.read(file, parsed.getChecksum()));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testServletCache() throws Exception {
+		File file = File.createTempFile("cotopaxi", ".cache");
+		file.delete();
+		System.setProperty(CotopaxiProperty.CONFIGURATION_CACHE.name(), file.getAbsolutePath());
+		CotopaxiServlet servlet = new CotopaxiServlet();
+		try {
+			servlet.forceReload();
+			assertTrue(file.exists());
+			// changes the cached configuration, to check the next boot loads it
+			byte[] content = FileUtil.getBytes(FileUtil.getInputStream(ConfigurationLoader.CONFIGURATION_FILENAME));
+			Configuration cached = ConfigurationLoader.parse(content);
+			cached.addProperty(CotopaxiProperty.APPLICATION_BASE_URL.name(), "http://cached");
+			assertTrue(ConfigurationCache.write(file, cached));
+			servlet.forceReload();
+			assertEquals("http://cached", CotopaxiProperty.snapshot().get(CotopaxiProperty.APPLICATION_BASE_URL));
+		} finally {
+			servlet.forceReset();
+			file.delete();
+		}
+	}
 }
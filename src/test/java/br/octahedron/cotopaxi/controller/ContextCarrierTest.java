@@ -0,0 +1,63 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.controller;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class ContextCarrierTest {
+
+	@Test
+	public void testScopeRestoresPrevious() {
+		ControllerContext.setContext(null, null);
+		ControllerContext outer = ControllerContext.getContext();
+		ControllerContext.setContext(null, null);
+		ControllerContext inner = ControllerContext.getContext();
+		assertNotSame(outer, inner);
+
+		ControllerContext previous = ContextCarrier.bind(outer);
+		assertSame(inner, previous);
+		assertSame(outer, ContextCarrier.current());
+		ContextCarrier.restore(previous);
+		assertSame(inner, ContextCarrier.current());
+
+		ContextCarrier.restore(null);
+		assertNull(ContextCarrier.current());
+	}
+
+	@Test
+	public void testContextNotShared() throws InterruptedException {
+		ControllerContext.setContext(null, null);
+		final ControllerContext[] other = new ControllerContext[1];
+		Thread thread = new Thread() {
+			@Override
+			public void run() {
+				other[0] = ContextCarrier.current();
+			}
+		};
+		thread.start();
+		thread.join();
+		assertNull(other[0]);
+		ControllerContext.clearContext();
+	}
+}
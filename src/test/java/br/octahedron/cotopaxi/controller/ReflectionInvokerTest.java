@@ -0,0 +1,52 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.controller;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class ReflectionInvokerTest {
+
+	@Test
+	public void testInvoke() throws Throwable {
+		InvokedController controller = new InvokedController();
+		new ReflectionInvoker(InvokedController.class.getMethod("getIndex")).invoke(controller);
+		new ReflectionInvoker(InvokedController.class.getMethod("getIndex")).invoke(controller);
+		assertEquals(2, controller.count);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testUnwrapException() throws Throwable {
+		new ReflectionInvoker(InvokedController.class.getMethod("getError")).invoke(new InvokedController());
+	}
+
+	public static class InvokedController extends Controller {
+		private int count = 0;
+
+		public void getIndex() {
+			this.count++;
+		}
+
+		public void getError() {
+			throw new IllegalStateException();
+		}
+	}
+}
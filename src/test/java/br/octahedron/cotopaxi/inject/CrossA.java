@@ -0,0 +1,47 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.inject;
+
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * A singleton that depends on {@link CrossB}, that depends on it.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class CrossA {
+
+	/**
+	 * Holds each constructor until both singletons are being created
+	 */
+	protected static final CyclicBarrier created = new CyclicBarrier(2);
+
+	@Inject
+	private CrossB crossB;
+
+	public CrossA() throws Exception {
+		created.await();
+	}
+
+	public CrossB getCrossB() {
+		return this.crossB;
+	}
+
+	public void setCrossB(CrossB crossB) {
+		this.crossB = crossB;
+	}
+}
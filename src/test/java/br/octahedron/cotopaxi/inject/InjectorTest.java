@@ -16,10 +16,26 @@
  */
 package br.octahedron.cotopaxi.inject;
 
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
 
+import br.octahedron.cotopaxi.inject.DependencyManager.Registry;
+
 /**
  * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
  */
@@ -35,4 +51,111 @@ public class InjectorTest {
 		UserDAO userDAO = service.getUserDAO();
 		assertNotNull(userDAO);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void testInjectionPlan() throws Exception {
+		InjectionPlan plan = InjectionPlan.of(UserFacade.class);
+		assertSame(plan, InjectionPlan.of(UserFacade.class));
+		assertEquals(1, plan.size());
+		assertFalse(plan.isGenerated());
+		UserFacade first = Injector.createInstance(UserFacade.class);
+		UserFacade second = Injector.createInstance(UserFacade.class);
+		assertNotSame(first, second);
+		assertSame(first.getUserService(), second.getUserService());
+	}
+
+	@Test(timeout = 5000)
+	public void testSingletonCreatedOnce() throws Exception {
+		DependencyManager.removeImplementation(SlowSingleton.class);
+		SlowSingleton.created.set(0);
+		ExecutorService threads = Executors.newFixedThreadPool(8);
+		List<Future<SlowSingleton>> results = new ArrayList<Future<SlowSingleton>>();
+		for (int i = 0; i < 8; i++) {
+			results.add(threads.submit(new Callable<SlowSingleton>() {
+				@Override
+				public SlowSingleton call() throws Exception {
+					return Injector.getInstance(SlowSingleton.class);
+				}
+			}));
+		}
+		SlowSingleton singleton = results.get(0).get();
+		for (Future<SlowSingleton> result : results) {
+			assertSame(singleton, result.get());
+		}
+		threads.shutdown();
+		assertEquals(1, SlowSingleton.created.get());
+		// a self dependency fails, instead of waiting forever
+		assertNull(singleton.getSlowSingleton());
+	}
+
+	@Test(timeout = 5000)
+	public void testCrossThreadsCycle() throws Exception {
+		ExecutorService threads = Executors.newFixedThreadPool(2);
+		Future<CrossA> a = threads.submit(new Callable<CrossA>() {
+			@Override
+			public CrossA call() throws Exception {
+				return Injector.getInstance(CrossA.class);
+			}
+		});
+		Future<CrossB> b = threads.submit(new Callable<CrossB>() {
+			@Override
+			public CrossB call() throws Exception {
+				return Injector.getInstance(CrossB.class);
+			}
+		});
+		CrossA crossA = a.get();
+		CrossB crossB = b.get();
+		threads.shutdown();
+		// one of the dependencies fails, instead of both threads waiting forever
+		assertTrue(crossA.getCrossB() == null || crossB.getCrossA() == null);
+	}
+
+	@Test
+	public void testFailureCause() {
+		try {
+			Injector.getInstance(Broken.class);
+			fail();
+		} catch (InstantiationException ex) {
+			assertTrue(ex.getCause() instanceof IllegalStateException);
+		}
+	}
+
+	@Test
+	public void testStagedRegistry() throws Exception {
+		UserDAO published = Injector.getInstance(UserDAO.class);
+		Registry registry = new Registry();
+		DependencyManager.stage(registry);
+		try {
+			UserDAO staged = Injector.getInstance(UserDAO.class);
+			assertNotSame(published, staged);
+			assertSame(staged, Injector.getInstance(UserDAO.class));
+		} finally {
+			DependencyManager.stage(null);
+		}
+		assertSame(published, Injector.getInstance(UserDAO.class));
+	}
+
+	public static class Broken {
+		public Broken() {
+			throw new IllegalStateException("broken");
+		}
+	}
+
+	@Test
+	public void testScopes() throws Exception {
+		RequestScope.bind(new RequestScope());
+		try {
+			ScopedFacade first = Injector.getInstance(ScopedFacade.class, Scope.PROTOTYPE);
+			ScopedFacade second = Injector.getInstance(ScopedFacade.class, Scope.PROTOTYPE);
+			assertNotSame(first, second);
+			assertSame(first.getUserService(), second.getUserService());
+			assertNotSame(first.getUserDAO(), second.getUserDAO());
+
+			RequestScope.bind(new RequestScope());
+			ScopedFacade third = Injector.getInstance(ScopedFacade.class, Scope.PROTOTYPE);
+			assertNotSame(first.getUserService(), third.getUserService());
+		} finally {
+			RequestScope.bind(null);
+		}
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.inject;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A singleton that takes a while to be created, and depends on itself.
+ * 
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class SlowSingleton {
+
+	protected static final AtomicInteger created = new AtomicInteger();
+
+	@Inject
+	private SlowSingleton slowSingleton;
+
+	public SlowSingleton() throws InterruptedException {
+		created.incrementAndGet();
+		Thread.sleep(50);
+	}
+
+	public SlowSingleton getSlowSingleton() {
+		return this.slowSingleton;
+	}
+
+	public void setSlowSingleton(SlowSingleton slowSingleton) {
+		this.slowSingleton = slowSingleton;
+	}
+}
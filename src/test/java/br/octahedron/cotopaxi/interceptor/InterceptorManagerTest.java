@@ -85,6 +85,19 @@ public class InterceptorManagerTest {
 		assertEquals(TestingOne.class, interceptor1.receivedAnn.annotationType());
 	}
 
+	@Test
+	public void testChain() throws SecurityException, NoSuchMethodException {
+		this.manager.addControllerInterceptor(interceptor1);
+		this.manager.addControllerInterceptor(interceptor2);
+		InterceptorChain chain = this.manager.chain(AnnotatedClass.class.getMethod("test", null));
+		assertEquals(2, chain.size());
+		chain.execute(null);
+
+		assertEquals(1, interceptor1.myOrder);
+		assertEquals(2, interceptor2.myOrder);
+		assertEquals(0, interceptor3.myOrder);
+	}
+
 	class TestInterceptor extends ControllerInterceptor {
 
 		private Class<? extends Annotation> ann;
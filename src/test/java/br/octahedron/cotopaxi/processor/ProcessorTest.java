@@ -0,0 +1,124 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.processor;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNotNull;
+import static junit.framework.Assert.assertTrue;
+import static org.junit.Assume.assumeNotNull;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.octahedron.cotopaxi.config.Configuration;
+import br.octahedron.cotopaxi.config.ConfigurationIndex;
+import br.octahedron.cotopaxi.config.ConfigurationLoader;
+import br.octahedron.cotopaxi.inject.GeneratedInjector;
+import br.octahedron.cotopaxi.inject.Injector;
+import br.octahedron.cotopaxi.inject.UserService;
+import br.octahedron.util.FileUtil;
+
+/**
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class ProcessorTest {
+
+	private static final String SAMPLE = "package sample;\n" + "import br.octahedron.cotopaxi.inject.*;\n" + "public class Facade {\n"
+			+ "	@Inject private UserService userService;\n" + "	public UserService getUserService() { return this.userService; }\n"
+			+ "	public void setUserService(UserService userService) { this.userService = userService; }\n" + "}\n";
+
+	private File dir;
+	private ClassLoader loader;
+
+	@Before
+	public void setUp() throws Exception {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		assumeNotNull(compiler);
+		this.dir = File.createTempFile("cotopaxi", "processor");
+		this.dir.delete();
+		new File(this.dir, "sample").mkdirs();
+		File source = new File(this.dir, "sample/Facade.java");
+		FileWriter writer = new FileWriter(source);
+		writer.write(SAMPLE);
+		writer.close();
+
+		String classpath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+		String config = new File(ClassLoader.getSystemResource("test.config").toURI()).getAbsolutePath();
+		int result = compiler.run(null, null, null, "-classpath", classpath, "-d", this.dir.getAbsolutePath(), "-s",
+				this.dir.getAbsolutePath(), "-processor", CotopaxiProcessor.class.getName(), "-A" + CotopaxiProcessor.CONFIG_OPTION + "=" + config,
+				source.getAbsolutePath());
+		assertEquals(0, result);
+		this.loader = new URLClassLoader(new URL[] { this.dir.toURI().toURL() }, this.getClass().getClassLoader());
+	}
+
+	@After
+	public void tearDown() {
+		if (this.dir != null) {
+			delete(this.dir);
+		}
+	}
+
+	@Test
+	public void generateInjector() throws Exception {
+		Class<?> facadeClass = this.loader.loadClass("sample.Facade");
+		Class<?> injectorClass = this.loader.loadClass("sample.Facade" + GeneratedInjector.SUFFIX);
+		assertTrue(GeneratedInjector.class.isAssignableFrom(injectorClass));
+
+		Object facade = Injector.createInstance(facadeClass);
+		Object service = facadeClass.getMethod("getUserService").invoke(facade);
+		assertNotNull(service);
+		assertEquals(Injector.getInstance(UserService.class), service);
+	}
+
+	@Test
+	public void generateConfiguration() throws Exception {
+		Class<?> indexClass = this.loader.loadClass(ConfigurationIndex.CLASS_NAME);
+		Configuration compiled = ((ConfigurationIndex) indexClass.newInstance()).configuration();
+		byte[] content = FileUtil.getBytes(ClassLoader.getSystemResourceAsStream("test.config"));
+		Configuration parsed = ConfigurationLoader.parse(content);
+
+		assertEquals(ConfigurationLoader.checksum(content), compiled.getChecksum());
+		assertEquals(parsed.getChecksum(), compiled.getChecksum());
+		assertEquals(parsed.getProperties().size(), compiled.getProperties().size());
+		for (int i = 0; i < parsed.getProperties().size(); i++) {
+			assertTrue(Arrays.equals(parsed.getProperties().get(i), compiled.getProperties().get(i)));
+		}
+		assertEquals(parsed.getInterceptors(), compiled.getInterceptors());
+		assertEquals(parsed.getBootloaders(), compiled.getBootloaders());
+		assertEquals(parsed.getControllers(), compiled.getControllers());
+	}
+
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
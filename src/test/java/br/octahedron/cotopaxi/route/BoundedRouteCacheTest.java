@@ -0,0 +1,85 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.route;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import br.octahedron.cotopaxi.controller.ControllerDescriptor;
+
+/**
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class BoundedRouteCacheTest {
+
+	private Route desc = new Route(new ControllerDescriptor("/user/{id}", "get", "User", "java.lang.String"), new String[] { "user", "{id}" });
+
+	@Test
+	public void testHitAndMiss() {
+		BoundedRouteCache cache = new BoundedRouteCache(10);
+		assertNull(cache.get(HttpMethod.GET, "/user/1"));
+		cache.put(HttpMethod.GET, "/user/1", desc);
+		assertEquals(desc, cache.get(HttpMethod.GET, "/user/1"));
+		assertEquals(1, cache.hits());
+		assertEquals(1, cache.misses());
+		assertEquals(0, cache.evictions());
+	}
+
+	@Test
+	public void testBounded() {
+		BoundedRouteCache cache = new BoundedRouteCache(100);
+		for (int i = 0; i < 1000; i++) {
+			cache.put(HttpMethod.GET, "/user/" + i, desc);
+		}
+		assertTrue(cache.size() <= 100);
+		assertEquals(1000 - cache.size(), cache.evictions());
+	}
+
+	@Test
+	public void testRecentlyUsedKept() {
+		BoundedRouteCache cache = new BoundedRouteCache(10);
+		cache.put(HttpMethod.GET, "/user/hot", desc);
+		for (int i = 0; i < 50; i++) {
+			cache.put(HttpMethod.GET, "/user/" + i, desc);
+			assertNotNull(cache.get(HttpMethod.GET, "/user/hot"));
+		}
+		assertTrue(cache.evictions() > 0);
+	}
+
+	@Test
+	public void testKeyedByMethod() {
+		BoundedRouteCache cache = new BoundedRouteCache(10);
+		cache.put(HttpMethod.GET, "/user/1", desc);
+		assertNull(cache.get(HttpMethod.POST, "/user/1"));
+		assertEquals(desc, cache.get(HttpMethod.GET, "/user/1"));
+		assertEquals(1, cache.size());
+		// replacing an entry doesn't change the size
+		cache.put(HttpMethod.GET, "/user/1", desc);
+		assertEquals(1, cache.size());
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSize() {
+		new BoundedRouteCache(0);
+	}
+}
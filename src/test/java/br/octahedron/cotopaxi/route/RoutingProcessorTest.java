@@ -17,11 +17,17 @@
 package br.octahedron.cotopaxi.route;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.fail;
 import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
 
+import java.util.Arrays;
+import java.util.UUID;
+
 import javax.servlet.http.HttpServletRequest;
 
 import org.junit.Before;
@@ -213,5 +219,291 @@ public class RoutingProcessorTest {
 			verify(request);
 		}
 	}
-	
+
+	@Test
+	public void testDynamicLiteralBacktrack() throws NotFoundExeption  {
+		// setup mock
+		expect(request.getRequestURI()).andReturn("/users/edit").anyTimes();
+		expect(request.getMethod()).andReturn("POST");
+		request.setAttribute("username", "users");
+
+		// test
+		replay(request);
+		try {
+			ControllerDescriptor desc = router.route(request); 
+			assertEquals("EditUser", desc.getControllerName());
+		} finally {
+			verify(request);
+		}
+	}
+
+	@Test
+	public void testDynamicTrailingSeparator() throws NotFoundExeption  {
+		// setup mock
+		expect(request.getRequestURI()).andReturn("/users/search/vitor/").anyTimes();
+		expect(request.getMethod()).andReturn("GET");
+		request.setAttribute("name", "vitor");
+
+		// test
+		replay(request);
+		try {
+			ControllerDescriptor desc = router.route(request); 
+			assertEquals("SearchUser", desc.getControllerName());
+		} finally {
+			verify(request);
+		}
+	}
+
+	@Test(expected = NotFoundExeption.class)
+	public void testDynamicInvalidValue() throws NotFoundExeption {
+		// setup mock
+		expect(request.getRequestURI()).andReturn("/users/search/vitor+avelino").anyTimes();
+		expect(request.getMethod()).andReturn("GET");
+		// test
+		replay(request);
+		try {
+			router.route(request);
+		} finally {
+			verify(request);
+		}
+	}
+
+	@Test
+	public void testDynamicCached() throws NotFoundExeption  {
+		// setup mock
+		expect(request.getRequestURI()).andReturn("/TrollFace/edit/1/").anyTimes();
+		expect(request.getMethod()).andReturn("POST").times(2);
+		request.setAttribute("username", "TrollFace");
+		expectLastCall().times(2);
+		request.setAttribute("id", "1");
+		expectLastCall().times(2);
+
+		// test
+		replay(request);
+		try {
+			assertEquals("UserPost2", router.route(request).getControllerName());
+			assertEquals("UserPost2", router.route(request).getControllerName());
+			assertEquals(1, router.getRouteCache().hits());
+		} finally {
+			verify(request);
+		}
+	}
+
+	@Test
+	public void testTypedVariables() throws NotFoundExeption  {
+		Router typedRouter = new Router();
+		typedRouter.addRoute(new ControllerDescriptor("/item/{id:int}", "get", "ItemById", "java.lang.String"));
+		typedRouter.addRoute(new ControllerDescriptor("/item/{name}", "get", "ItemByName", "java.lang.String"));
+		typedRouter.addRoute(new ControllerDescriptor("/item/{key:uuid}/{slug:alpha}", "get", "ItemByKey", "java.lang.String"));
+		typedRouter.addRoute(new ControllerDescriptor("/item/{serial:long}/{slug}", "get", "ItemBySerial", "java.lang.String"));
+
+		// int
+		expect(request.getRequestURI()).andReturn("/item/42");
+		expect(request.getMethod()).andReturn("GET");
+		request.setAttribute("id", Integer.valueOf(42));
+		// int overflow, falls to untyped
+		expect(request.getRequestURI()).andReturn("/item/2147483648");
+		expect(request.getMethod()).andReturn("GET");
+		request.setAttribute("name", "2147483648");
+		// uuid and alpha
+		expect(request.getRequestURI()).andReturn("/item/123e4567-e89b-12d3-a456-426655440000/Cotopaxi");
+		expect(request.getMethod()).andReturn("GET");
+		request.setAttribute("key", UUID.fromString("123e4567-e89b-12d3-a456-426655440000"));
+		request.setAttribute("slug", "Cotopaxi");
+		// long, as alpha doesn't accept digits
+		expect(request.getRequestURI()).andReturn("/item/2147483648/v2");
+		expect(request.getMethod()).andReturn("GET");
+		request.setAttribute("serial", Long.valueOf(2147483648L));
+		request.setAttribute("slug", "v2");
+
+		// test
+		replay(request);
+		try {
+			assertEquals("ItemById", typedRouter.route(request).getControllerName());
+			assertEquals("ItemByName", typedRouter.route(request).getControllerName());
+			assertEquals("ItemByKey", typedRouter.route(request).getControllerName());
+			assertEquals("ItemBySerial", typedRouter.route(request).getControllerName());
+		} finally {
+			verify(request);
+		}
+	}
+
+	@Test
+	public void testIgnoreCase() throws NotFoundExeption  {
+		// setup mock
+		expect(request.getRequestURI()).andReturn("/Test/").anyTimes();
+		expect(request.getMethod()).andReturn("get");
+
+		// test
+		replay(request);
+		try {
+			ControllerDescriptor desc = router.route(request); 
+			assertEquals("Test1", desc.getControllerName());
+		} finally {
+			verify(request);
+		}
+	}
+
+	@Test
+	public void testDynamicIgnoreCase() throws NotFoundExeption  {
+		// setup mock
+		expect(request.getRequestURI()).andReturn("/Users/Search/Vitor").anyTimes();
+		expect(request.getMethod()).andReturn("Get");
+		request.setAttribute("name", "Vitor");
+
+		// test
+		replay(request);
+		try {
+			ControllerDescriptor desc = router.route(request); 
+			assertEquals("SearchUser", desc.getControllerName());
+		} finally {
+			verify(request);
+		}
+	}
+
+	@Test(expected = NotFoundExeption.class)
+	public void testUnknownMethod() throws NotFoundExeption {
+		// setup mock
+		expect(request.getRequestURI()).andReturn("/test");
+		expect(request.getMethod()).andReturn("PATCH");
+		// test
+		replay(request);
+		try {
+			router.route(request);
+		} finally {
+			verify(request);
+		}
+	}
+
+	@Test
+	public void testSetRoutes() throws NotFoundExeption  {
+		// setup mock
+		expect(request.getRequestURI()).andReturn("/users/search/vitor").anyTimes();
+		expect(request.getMethod()).andReturn("GET").times(2);
+		request.setAttribute("name", "vitor");
+		request.setAttribute("query", "vitor");
+
+		// test
+		replay(request);
+		try {
+			assertEquals("SearchUser", router.route(request).getControllerName());
+			router.setRoutes(Arrays.asList(new ControllerDescriptor("/users/search/{query}", "get", "NewSearch", "java.lang.String"),
+					new ControllerDescriptor("/{username}/{id}", "get", "UserPost1", "java.lang.String")));
+			// the cached route belongs to the replaced tables
+			assertEquals("NewSearch", router.route(request).getControllerName());
+		} finally {
+			verify(request);
+		}
+	}
+
+	@Test
+	public void testInvalidRoutesKeepCurrent() throws NotFoundExeption  {
+		// setup mock
+		expect(request.getRequestURI()).andReturn("/test");
+		expect(request.getMethod()).andReturn("GET");
+
+		// test
+		replay(request);
+		try {
+			router.setRoutes(Arrays.asList(new ControllerDescriptor("/other", "get", "Other", "java.lang.String"),
+					new ControllerDescriptor("/item/{id:float}", "get", "Item", "java.lang.String")));
+			fail();
+		} catch (IllegalArgumentException ex) {
+			assertEquals("Test1", router.route(request).getControllerName());
+		} finally {
+			verify(request);
+		}
+	}
+
+	@Test
+	public void testNotFoundCached() {
+		// setup mock
+		expect(request.getRequestURI()).andReturn("/wp-admin/setup/install.php").times(2);
+		expect(request.getMethod()).andReturn("GET").times(2);
+
+		// test
+		replay(request);
+		try {
+			assertNull(router.find(request));
+			assertNull(router.find(request));
+			assertEquals(1, router.getNotFoundCache().hits());
+		} finally {
+			verify(request);
+		}
+	}
+
+	@Test
+	public void testNotFoundStackless() {
+		NotFoundExeption ex = new NotFoundExeption("/trollface", "GET");
+		assertEquals(0, ex.getStackTrace().length);
+	}
+
+	@Test
+	public void testHeadMappedToGet() {
+		// setup mock
+		expect(request.getRequestURI()).andReturn("/users/search/vitor").anyTimes();
+		expect(request.getMethod()).andReturn("HEAD").anyTimes();
+		request.setAttribute("name", "vitor");
+
+		// test
+		replay(request);
+		try {
+			assertEquals("SearchUser", router.find(request).getControllerName());
+		} finally {
+			verify(request);
+		}
+	}
+
+	@Test
+	public void testAllowedMethods() {
+		// setup mock
+		expect(request.getRequestURI()).andReturn("/test/").anyTimes();
+		expect(request.getMethod()).andReturn("DELETE").anyTimes();
+
+		// test
+		replay(request);
+		try {
+			assertNull(router.find(request));
+			assertEquals("GET, POST, HEAD, OPTIONS", router.allowedMethods(request));
+		} finally {
+			verify(request);
+		}
+	}
+
+	@Test
+	public void testAllowedMethodsDynamic() {
+		// setup mock
+		expect(request.getRequestURI()).andReturn("/vitor/edit/10").anyTimes();
+		expect(request.getMethod()).andReturn("OPTIONS").anyTimes();
+
+		// test
+		replay(request);
+		try {
+			assertNull(router.find(request));
+			assertEquals("POST, OPTIONS", router.allowedMethods(request));
+		} finally {
+			verify(request);
+		}
+	}
+
+	@Test
+	public void testAllowedMethodsNotFound() {
+		// setup mock
+		expect(request.getRequestURI()).andReturn("/trollface/a/b/c").anyTimes();
+		expect(request.getMethod()).andReturn("GET").anyTimes();
+
+		// test
+		replay(request);
+		try {
+			assertNull(router.find(request));
+			assertNull(router.allowedMethods(request));
+		} finally {
+			verify(request);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownVariableType() {
+		router.addRoute(new ControllerDescriptor("/item/{id:float}", "get", "Item", "java.lang.String"));
+	}
 }
@@ -0,0 +1,112 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Test;
+
+import br.octahedron.cotopaxi.controller.ControllerDescriptor;
+import br.octahedron.cotopaxi.controller.ControllerExecutor;
+import br.octahedron.cotopaxi.controller.ControllerResponse;
+import br.octahedron.cotopaxi.interceptor.InterceptorManager;
+import br.octahedron.cotopaxi.view.response.JSONResponse;
+
+/**
+ * Tests for controller contexts recycling
+ * 
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class ContextRecyclingTest {
+
+	private static final int REQUESTS = 2000;
+	private final ControllerDescriptor desc = new ControllerDescriptor("/json", "get", "Json", "br.octahedron.cotopaxi.test.FakeController");
+
+	@Test
+	public void testResponseReused() throws Throwable {
+		ControllerExecutor executor = this.executor(true);
+		HttpServletRequest request = new Request("/json", "get").servletRequest();
+		ControllerResponse first = executor.execute(this.desc, request);
+		assertEquals("hello json", ((JSONResponse) first).output("msg"));
+		executor.release();
+		ControllerResponse second = executor.execute(this.desc, request);
+		assertSame(first, second);
+		assertEquals("hello json", ((JSONResponse) second).output("msg"));
+		executor.release();
+	}
+
+	@Test
+	public void testResponseNotReused() throws Throwable {
+		ControllerExecutor executor = this.executor(false);
+		HttpServletRequest request = new Request("/json", "get").servletRequest();
+		ControllerResponse first = executor.execute(this.desc, request);
+		executor.release();
+		ControllerResponse second = executor.execute(this.desc, request);
+		executor.release();
+		assertNotSame(first, second);
+	}
+
+	@Test
+	public void testAllocatedBytesPerRequest() throws Throwable {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		Method allocatedBytes;
+		try {
+			// HotSpot extension, not available at every JVM
+			allocatedBytes = Class.forName("com.sun.management.ThreadMXBean").getMethod("getThreadAllocatedBytes", long.class);
+			allocatedBytes.invoke(threads, Thread.currentThread().getId());
+		} catch (Exception ex) {
+			allocatedBytes = null;
+		}
+		assumeTrue(allocatedBytes != null);
+
+		long plain = this.allocatedPerRequest(this.executor(false), threads, allocatedBytes);
+		long recycled = this.allocatedPerRequest(this.executor(true), threads, allocatedBytes);
+		assertTrue(String.format("Recycled: %d bytes/request, plain: %d bytes/request", recycled, plain), recycled < plain);
+	}
+
+	private long allocatedPerRequest(ControllerExecutor executor, ThreadMXBean threads, Method allocatedBytes) throws Throwable {
+		HttpServletRequest request = new Request("/json", "get").servletRequest();
+		// warm up
+		for (int i = 0; i < REQUESTS; i++) {
+			executor.execute(this.desc, request);
+			executor.release();
+		}
+		long thread = Thread.currentThread().getId();
+		long start = (Long) allocatedBytes.invoke(threads, thread);
+		for (int i = 0; i < REQUESTS; i++) {
+			executor.execute(this.desc, request);
+			executor.release();
+		}
+		return ((Long) allocatedBytes.invoke(threads, thread) - start) / REQUESTS;
+	}
+
+	private ControllerExecutor executor(boolean recycle) {
+		ControllerExecutor executor = new ControllerExecutor(new InterceptorManager());
+		executor.setRecycleContexts(recycle);
+		return executor;
+	}
+}
@@ -16,6 +16,7 @@
  */
 package br.octahedron.cotopaxi.test;
 
+import br.octahedron.cotopaxi.controller.Continuation;
 import br.octahedron.cotopaxi.controller.Controller;
 
 /**
@@ -46,4 +47,25 @@ public class FakeController extends Controller {
 			throw new Exception("User not authorized");
 		}
 	}
+
+	public void getJson() {
+		out("msg", "hello json");
+		jsonSuccess();
+	}
+
+	public void getAsync() {
+		final Continuation continuation = suspend();
+		new Thread() {
+			@Override
+			public void run() {
+				continuation.resume(new Runnable() {
+					@Override
+					public void run() {
+						out("msg", "hello async");
+						success("async.vm");
+					}
+				});
+			}
+		}.start();
+	}
 }
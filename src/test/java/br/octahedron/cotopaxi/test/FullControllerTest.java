@@ -108,4 +108,17 @@ public class FullControllerTest extends CotopaxiTestHelper {
 		assertEquals("error.vm", resp.template());
 		assertTrue(resp.existsOutput("error"));
 	}
+
+	@Test
+	public void executeSuspendedController() {
+		Request req = request("/async", "get");
+		
+		Response resp = process(req);
+		
+		assertEquals(200, resp.code());
+		assertTrue(resp.isTemplate());
+		assertEquals("async.vm", resp.template());
+		assertTrue(resp.existsOutput("msg"));
+		assertEquals("hello async", resp.output("msg"));
+	}
 }
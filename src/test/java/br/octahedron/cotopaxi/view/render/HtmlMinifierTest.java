@@ -0,0 +1,74 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.render;
+
+import static junit.framework.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class HtmlMinifierTest {
+
+	@Test
+	public void collapseWhitespace() {
+		HtmlMinifier minifier = new HtmlMinifier();
+		assertEquals("<div>\n<p>Hello World</p>\n</div>", minifier.minify("<div>\n    <p>Hello    World</p>\n\t\n</div>"));
+		assertEquals(" <b>a</b> ", minifier.minify("  <b>a</b>\t "));
+	}
+
+	@Test
+	public void stripComments() {
+		HtmlMinifier minifier = new HtmlMinifier();
+		assertEquals("<p>a</p><p>b</p>", minifier.minify("<p>a</p><!-- a comment\n here --><p>b</p>"));
+		assertEquals("<!--[if IE]><p>ie</p><![endif]-->", minifier.minify("<!--[if IE]><p>ie</p><![endif]-->"));
+		// a comment split by dynamic content
+		assertEquals("<p>a</p><!-- user  ", minifier.minify("<p>a</p><!-- user  "));
+	}
+
+	@Test
+	public void keepTags() {
+		HtmlMinifier minifier = new HtmlMinifier();
+		assertEquals("<input value=\"a  b\"> <b>", minifier.minify("<input value=\"a  b\">   <b>"));
+		assertEquals("<p title='x >  y'\n  data-a=\"1\">a b</p>", minifier.minify("<p title='x >  y'\n  data-a=\"1\">a   b</p>"));
+		// a tag split by dynamic content
+		assertEquals("<input value=\"  ", minifier.minify("<input value=\"  "));
+		assertEquals("  \"> <b>", minifier.minify("  \">   <b>"));
+		// a lone less than sign isn't a tag
+		assertEquals("a < b", minifier.minify("a   <   b"));
+	}
+
+	@Test
+	public void keepRawElements() {
+		HtmlMinifier minifier = new HtmlMinifier();
+		String pre = "<pre class=\"code\">\n  int  a;\n    <!-- kept -->\n</pre>";
+		assertEquals(pre + " <p>", minifier.minify(pre + "   <p>"));
+		String script = "<SCRIPT>\n  var a = '  ';\n</SCRIPT>";
+		assertEquals(script, minifier.minify(script));
+		assertEquals("<textarea>  a\n  </textarea>", minifier.minify("<textarea>  a\n  </textarea>"));
+		// elements with similar names are minified
+		assertEquals("<presentation> a </presentation>", minifier.minify("<presentation>   a   </presentation>"));
+	}
+
+	@Test
+	public void keepRawElementsSplitByDynamicContent() {
+		HtmlMinifier minifier = new HtmlMinifier();
+		assertEquals("<pre>\n  ", minifier.minify("<pre>\n  "));
+		assertEquals("  \n</pre> <p>", minifier.minify("  \n</pre>   <p>"));
+	}
+}
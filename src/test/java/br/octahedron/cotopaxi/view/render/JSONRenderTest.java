@@ -0,0 +1,138 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.render;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import flexjson.JSONSerializer;
+
+/**
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class JSONRenderTest {
+
+	public enum Color {
+		RED
+	}
+
+	public static class Item {
+		public int amount = 2;
+		private String name;
+		private Date date = new Date(1000);
+		private Color color = Color.RED;
+		private List<Object> tags = new ArrayList<Object>(Arrays.asList("a", 1.5, null));
+		private int[] values = { 1, 2 };
+		private Item parent;
+
+		public Item(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+
+		public Date getDate() {
+			return this.date;
+		}
+
+		public Color getColor() {
+			return this.color;
+		}
+
+		public List<Object> getTags() {
+			return this.tags;
+		}
+
+		public int[] getValues() {
+			return this.values;
+		}
+
+		public Item getParent() {
+			return this.parent;
+		}
+
+		public boolean isEmpty() {
+			return false;
+		}
+	}
+
+	private static String render(Object object, boolean prettyPrint) {
+		StringWriter writer = new StringWriter();
+		new JSONRender(prettyPrint).render(object, writer);
+		return writer.toString();
+	}
+
+	@Test
+	public void compatibleWithFlexjson() {
+		Map<String, Object> output = new LinkedHashMap<String, Object>();
+		output.put("item", new Item("it\"em\\\né"));
+		output.put("items", Arrays.asList(new Item("a"), new Item("b")));
+		output.put("count", 5L);
+		output.put("none", null);
+		assertEquals(new JSONSerializer().deepSerialize(output), render(output, false));
+	}
+
+	@Test
+	public void prettyPrint() {
+		Map<String, Object> output = new LinkedHashMap<String, Object>();
+		output.put("a", Arrays.asList(1, 2));
+		output.put("b", new LinkedHashMap<String, Object>());
+		assertEquals("{\n    \"a\": [\n        1,\n        2\n    ],\n    \"b\": {}\n}", render(output, true));
+		assertEquals("{\"a\":[1,2],\"b\":{}}", render(output, false));
+	}
+
+	@Test
+	public void escape() {
+		assertEquals("\"\\u0001\\t\\u2028</\"", render("\u0001\t\u2028</", false));
+	}
+
+	@Test
+	public void skipCycles() {
+		Item item = new Item("a");
+		item.parent = item;
+		Map<String, Object> output = new LinkedHashMap<String, Object>();
+		output.put("self", output);
+		output.put("item", item);
+		output.put("again", item);
+		String json = render(output, false);
+		String expected = render(new Item("a"), false).replace("\"parent\":null,", "");
+		assertEquals("{\"item\":" + expected + ",\"again\":" + expected + "}", json);
+	}
+
+	@Test
+	public void nonFiniteNumbers() {
+		assertEquals("[null,null,1.0]", render(new double[] { Double.NaN, Double.POSITIVE_INFINITY, 1 }, false));
+	}
+
+	@Test
+	public void plansAreCached() {
+		assertSame(JSONWriter.plan(Item.class), JSONWriter.plan(Item.class));
+		assertEquals(9, JSONWriter.plan(Item.class).names().length);
+	}
+}
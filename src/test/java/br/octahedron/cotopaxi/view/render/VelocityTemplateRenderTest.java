@@ -0,0 +1,178 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.render;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import br.octahedron.cotopaxi.CotopaxiProperty;
+import br.octahedron.cotopaxi.CotopaxiProperty.RunningMode;
+
+/**
+ * @author Danilo Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class VelocityTemplateRenderTest {
+
+	private static final String RUNNING_MODE_PROP = "ctpx.running.mode";
+
+	private File folder;
+	private String runningMode;
+
+	@Before
+	public void setUp() throws IOException {
+		this.folder = File.createTempFile("cotopaxi", "templates");
+		this.folder.delete();
+		new File(this.folder, "user").mkdirs();
+		write("index.vm", "Hello $name!");
+		write("user/show.vm", "#foreach($i in [1..3])$i#end");
+		write("broken.vm", "#if($name");
+		write("minify.vm", "<html>\n  <body>\n    <!-- page -->\n    <pre>\n  $code\n</pre>\n    <p>$code</p>\n  </body>\n</html>");
+		write("page.vm", "<html><body>#foreach($i in [1..2])<p>item $i</p>#end<h1>Ol\u00e1 $name</h1></body></html>");
+		System.setProperty(CotopaxiProperty.TEMPLATE_FOLDER.name(), this.folder.getAbsolutePath());
+		this.runningMode = System.getProperty(RUNNING_MODE_PROP);
+	}
+
+	@After
+	public void tearDown() {
+		CotopaxiProperty.forceReset();
+		if (this.runningMode != null) {
+			System.setProperty(RUNNING_MODE_PROP, this.runningMode);
+		} else {
+			System.clearProperty(RUNNING_MODE_PROP);
+		}
+		for (File file : new File(this.folder, "user").listFiles()) {
+			file.delete();
+		}
+		for (File file : this.folder.listFiles()) {
+			file.delete();
+		}
+		this.folder.delete();
+	}
+
+	@Test
+	public void precompile() {
+		System.setProperty(RUNNING_MODE_PROP, RunningMode.PRODUCTION.name());
+		VelocityTemplateRender render = new VelocityTemplateRender();
+		assertEquals(4, render.precompile());
+
+		Map<String, Object> output = new HashMap<String, Object>();
+		output.put("name", "World");
+		StringWriter writer = new StringWriter();
+		render.render("index.vm", output, writer);
+		assertEquals("Hello World!", writer.toString());
+	}
+
+	@Test
+	public void precompileSequentially() {
+		System.setProperty(RUNNING_MODE_PROP, RunningMode.DEVELOPMENT.name());
+		System.setProperty(CotopaxiProperty.BOOT_THREADS.name(), "1");
+		assertEquals(4, new VelocityTemplateRender().precompile());
+	}
+
+	@Test
+	public void noCacheAtTest() {
+		System.setProperty(RUNNING_MODE_PROP, RunningMode.TEST.name());
+		assertEquals(0, new VelocityTemplateRender().precompile());
+	}
+
+
+	@Test
+	public void preencoding() throws IOException {
+		System.setProperty(RUNNING_MODE_PROP, RunningMode.PRODUCTION.name());
+		Map<String, Object> output = new HashMap<String, Object>();
+		output.put("name", "Jos\u00e9");
+		String expected = "<html><body><p>item 1</p><p>item 2</p><h1>Ol\u00e1 Jos\u00e9</h1></body></html>";
+
+		System.setProperty(CotopaxiProperty.TEMPLATE_PREENCODING.name(), "true");
+		VelocityTemplateRender render = new VelocityTemplateRender();
+		StringWriter writer = new StringWriter();
+		render.render("page.vm", output, writer);
+		assertEquals(expected, writer.toString());
+
+		RecordingOutput encoded = new RecordingOutput();
+		render.render("page.vm", output, encoded);
+		encoded.flush();
+		assertEquals(expected, new String(encoded.bytes.toByteArray(), CotopaxiProperty.charset()));
+		assertTrue(encoded.encodedWrites > 0);
+	}
+
+	@Test
+	public void minify() {
+		System.setProperty(RUNNING_MODE_PROP, RunningMode.PRODUCTION.name());
+		System.setProperty(CotopaxiProperty.TEMPLATE_MINIFY.name(), "DEVELOPMENT, PRODUCTION");
+		Map<String, Object> output = new HashMap<String, Object>();
+		output.put("code", "  a  ");
+		StringWriter writer = new StringWriter();
+		new VelocityTemplateRender().render("minify.vm", output, writer);
+		// dynamic content isn't minified
+		assertEquals("<html>\n<body>\n\n<pre>\n    a  \n</pre>\n<p>  a  </p>\n</body>\n</html>", writer.toString());
+	}
+
+	private void write(String name, String content) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(new File(this.folder, name)), CotopaxiProperty.charset());
+		writer.write(content);
+		writer.close();
+	}
+
+	private static class RecordingOutput extends Writer implements EncodedOutput {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final Writer chars = new OutputStreamWriter(this.bytes, this.charset());
+		private int encodedWrites = 0;
+
+		@Override
+		public Charset charset() {
+			return CotopaxiProperty.charset();
+		}
+
+		@Override
+		public void writeEncoded(byte[] encoded) throws IOException {
+			this.encodedWrites++;
+			this.chars.flush();
+			this.bytes.write(encoded);
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			this.chars.write(cbuf, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			this.chars.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.chars.close();
+		}
+	}
+}
@@ -0,0 +1,155 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.cotopaxi.view.response;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Locale;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Test;
+
+import br.octahedron.cotopaxi.CotopaxiProperty;
+
+/**
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class ResponseBufferTest {
+
+	@After
+	public void tearDown() {
+		CotopaxiProperty.forceReset();
+	}
+
+	@Test
+	public void smallResponse() throws IOException {
+		FakeServletResponse servletResponse = new FakeServletResponse();
+		String content = text(1000);
+		response(content).dispatch(servletResponse.proxy());
+		assertEquals(content, servletResponse.body());
+		assertEquals(1000, servletResponse.contentLength);
+		assertEquals(1, servletResponse.writes);
+		assertTrue(servletResponse.closed);
+	}
+
+	@Test
+	public void largeResponse() throws IOException {
+		System.setProperty(CotopaxiProperty.RESPONSE_BUFFER_SIZE.name(), "256");
+		CotopaxiProperty.refresh();
+		FakeServletResponse servletResponse = new FakeServletResponse();
+		String content = text(1000);
+		response(content).dispatch(servletResponse.proxy());
+		assertEquals(content, servletResponse.body());
+		assertEquals(-1, servletResponse.contentLength);
+		assertEquals(4, servletResponse.writes);
+	}
+
+	@Test
+	public void reuseBuffers() throws IOException {
+		for (int i = 0; i < 3; i++) {
+			FakeServletResponse servletResponse = new FakeServletResponse();
+			String content = text(10 + i);
+			response(content).dispatch(servletResponse.proxy());
+			assertEquals(content, servletResponse.body());
+			assertEquals(content.length(), servletResponse.contentLength);
+		}
+	}
+
+	private static String text(int length) {
+		StringBuilder buf = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			buf.append((char) ('a' + i % 26));
+		}
+		return buf.toString();
+	}
+
+	private static RenderableResponse response(final String content) {
+		return new RenderableResponse(200, new HashMap<String, Object>(), Locale.US) {
+			@Override
+			protected String contentType() {
+				return "text/plain";
+			}
+
+			@Override
+			protected void render() {
+				try {
+					// many small writes, as templates do
+					for (int i = 0; i < content.length(); i += 10) {
+						this.writer.write(content.substring(i, Math.min(i + 10, content.length())));
+					}
+				} catch (IOException ex) {
+					throw new RuntimeException(ex);
+				}
+			}
+		};
+	}
+
+	private static class FakeServletResponse implements InvocationHandler {
+		private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+		private int contentLength = -1;
+		private int writes = 0;
+		private boolean closed = false;
+		private final ServletOutputStream out = new ServletOutputStream() {
+			@Override
+			public void write(int b) {
+				writes++;
+				body.write(b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+				writes++;
+				body.write(b, off, len);
+			}
+
+			@Override
+			public void close() {
+				closed = true;
+			}
+		};
+
+		private HttpServletResponse proxy() {
+			return (HttpServletResponse) Proxy.newProxyInstance(this.getClass().getClassLoader(), new Class<?>[] { HttpServletResponse.class }, this);
+		}
+
+		private String body() {
+			return new String(this.body.toByteArray());
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) {
+			if (method.getName().equals("getOutputStream")) {
+				return this.out;
+			} else if (method.getName().equals("setContentLength")) {
+				this.contentLength = (Integer) args[0];
+			} else if (method.getName().equals("isCommitted")) {
+				return false;
+			}
+			return null;
+		}
+	}
+}
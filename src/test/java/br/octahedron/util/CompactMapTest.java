@@ -0,0 +1,88 @@
+/*
+ *  This file is part of Cotopaxi.
+ *
+ *  Cotopaxi is free software: you can redistribute it and/or modify
+ *  it under the terms of the Lesser GNU General Public License as published
+ *  by the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  Cotopaxi is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  Lesser GNU General Public License for more details.
+ *
+ *  You should have received a copy of the Lesser GNU General Public License
+ *  along with Cotopaxi. If not, see <http://www.gnu.org/licenses/>.
+ */
+package br.octahedron.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+
+/**
+ * @author Danilo Penna Queiroz - daniloqueiroz@octahedron.com.br
+ */
+public class CompactMapTest {
+
+	@Test
+	public void testSmallMap() {
+		Map<String, Object> map = new CompactMap<String, Object>();
+		assertNull(map.put("name", "cotopaxi"));
+		assertNull(map.put(null, "null key"));
+		assertEquals("cotopaxi", map.put("name", "volcano"));
+		assertEquals(2, map.size());
+		assertEquals("volcano", map.get(new String("name")));
+		assertEquals("null key", map.get(null));
+		assertTrue(map.containsKey("name"));
+		assertFalse(map.containsKey("other"));
+		assertEquals("volcano", map.remove("name"));
+		assertEquals(1, map.size());
+		assertNull(map.get("name"));
+	}
+
+	@Test
+	public void testGrowToHash() {
+		Map<String, Object> map = new CompactMap<String, Object>();
+		Map<String, Object> expected = new HashMap<String, Object>();
+		for (int i = 0; i < CompactMap.THRESHOLD * 2; i++) {
+			map.put("key" + i, i);
+			expected.put("key" + i, i);
+		}
+		assertEquals(expected, map);
+		assertEquals(expected.hashCode(), map.hashCode());
+		map.clear();
+		assertTrue(map.isEmpty());
+		map.put("key", "value");
+		assertEquals("value", map.get("key"));
+	}
+
+	@Test
+	public void testIteratorRemove() {
+		Map<String, Object> map = new CompactMap<String, Object>();
+		map.put("a", 1);
+		map.put("b", 2);
+		map.put("c", 3);
+		Iterator<Entry<String, Object>> it = map.entrySet().iterator();
+		while (it.hasNext()) {
+			Entry<String, Object> entry = it.next();
+			if (entry.getKey().equals("b")) {
+				it.remove();
+			} else {
+				entry.setValue(0);
+			}
+		}
+		assertEquals(2, map.size());
+		assertFalse(map.containsKey("b"));
+		assertEquals(0, map.get("a"));
+		assertEquals(0, map.get("c"));
+	}
+}